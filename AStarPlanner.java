@@ -0,0 +1,105 @@
+import java.util.ArrayList;
+
+/**
+ * A* search with Manhattan distance to the end node as heuristic, scaled by the minimum weight per step of the graph
+ * The heuristic never overestimates and it is consistent, so the first time the end node is extracted its distance is the shortest one
+ * Nodes are expanded in the order of distance + heuristic, so the search heads towards the end node instead of growing as a disk
+ * With landmarks, the heuristic is the larger one of the Manhattan bound and the landmark (ALT) bound, the landmark bound is
+ * only consistent up to float rounding, so a node whose distance drops after it was expanded is expanded again
+ * Among previous nodes that give a node the same distance, the one with the smallest distance is kept, Dijkstra expands
+ * nodes in that order and keeps the first one, so the paths are the same as Dijkstra's and not only as short
+ */
+public class AStarPlanner implements Planner {
+    private final Graph graph; // Graph of the map
+    private final Node[][] nodes; // 2-D Node array that stores every node
+    private final VisibilityLayer visibility; // Revealed flags of the nodes, read by the searches
+    private final SearchContext context; // Working arrays shared by every search of this planner
+    private final double heuristicScale; // Cost of one unit of Manhattan distance at least
+    private final Landmarks landmarks; // Landmark lower bounds, null to use the Manhattan bound only
+
+
+    /**
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     */
+    AStarPlanner(Graph graph, Node[][] nodes, VisibilityLayer visibility) {
+        this(graph, nodes, visibility, null);
+    }
+
+    /**
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     * @param landmarks Landmark lower bounds of the map, null to use the Manhattan bound only
+     */
+    AStarPlanner(Graph graph, Node[][] nodes, VisibilityLayer visibility, Landmarks landmarks) {
+        this.landmarks = landmarks;
+        this.graph = graph;
+        this.nodes = nodes;
+        this.visibility = visibility;
+        this.context = new SearchContext(graph.getRowCount(), graph.getColumnCount());
+        // Slightly lowered so that rounding of the multiplication can not make the heuristic overestimate a sum of weights
+        this.heuristicScale = graph.getMinWeightPerStep() * (1 - 1e-9);
+    }
+
+
+    @Override
+    public double findPath(Node startingNode, Node endNode, ArrayList<Node> path, IntSet pickedNumbers) {
+        if (endNode == null) // Early terminate condition
+            return 0;
+        context.reset(); // Every node is unvisited with INFINITY weight now
+
+        int startIndex = context.index(startingNode.getX(), startingNode.getY()); // Flat index of the starting node
+        int endIndex = context.index(endNode.getX(), endNode.getY()); // Flat index of the end node
+        int endX = endNode.getX();
+        int endY = endNode.getY();
+        int columnCount = graph.getColumnCount();
+        double[] endDistances = landmarks != null ? landmarks.getDistances(endIndex) : null; // Distances of the end to the landmarks
+
+        IndexedMinHeap pq = context.getPriorityQueue(); // Priority Queue that stores node indexes by total weight + heuristic
+        pq.insert(startIndex, 0);
+        context.update(startIndex, 0, startIndex);
+
+        while (!pq.isEmpty()) {
+            int currentIndex = pq.deleteMin();
+            if (currentIndex == endIndex) // Early terminate, endNode reached
+                break;
+            double currentWeight = context.getTotalWeight(currentIndex); // Weight to reach the current node
+            context.markVisited(currentIndex);
+            int edgeEnd = graph.getEdgeEnd(currentIndex);
+            for (int e = graph.getEdgeStart(currentIndex); e < edgeEnd; e++) {
+                int neighbourIndex = graph.getTarget(e);
+                if (!Main.isPassable(graph, visibility, neighbourIndex, pickedNumbers))
+                    continue;
+                double totalWeight = currentWeight + graph.getWeight(e); // Total weight to reach neighbour
+                if (totalWeight == context.getTotalWeight(neighbourIndex)) {
+                    // Equal cost, the previous node Dijkstra would have reached it from first is kept, its distance does not change
+                    if (currentWeight < context.getTotalWeight(context.getPreviousNode(neighbourIndex)))
+                        context.update(neighbourIndex, totalWeight, currentIndex);
+                    continue;
+                }
+                if (landmarks == null && context.isVisited(neighbourIndex))
+                    continue;
+                if (totalWeight < context.getTotalWeight(neighbourIndex)) {
+                    context.update(neighbourIndex, totalWeight, currentIndex);
+                    int distance = Math.abs(neighbourIndex / columnCount - endX) + Math.abs(neighbourIndex % columnCount - endY);
+                    double heuristic = heuristicScale * distance;
+                    if (landmarks != null)
+                        heuristic = Math.max(heuristic, landmarks.lowerBound(neighbourIndex, endDistances));
+                    pq.insertOrDecrease(neighbourIndex, totalWeight + heuristic);
+                }
+            }
+        }
+
+        context.addPath(startIndex, endIndex, nodes, path); // Construct the path in reverse order
+
+        return context.getTotalWeight(endIndex);
+    }
+
+    @Override
+    public long getExpansions() {
+        return context.getExpansions();
+    }
+
+}
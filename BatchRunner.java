@@ -0,0 +1,121 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many objective files (scenarios) against one map in a single process
+ * The map is loaded once and shared, scenarios run concurrently on a bounded thread pool and each one has its own
+ * traveler state and output file (objective file name with the ".output.txt" suffix, or the suffix of the output format)
+ * Wizard's options of every scenario are evaluated on one shared pool of --threads threads (default: every core)
+ * Usage: java BatchRunner [--nodes=nodeFile --edges=edgeFile | --binary-map=map.bin [--tile-cache-mb=N] [--verify-map]] [--scenario-threads=N] [--threads=N]
+ *                         [--planner=name] [--heap-arity=0|2|4|8] [--output-format=text|ndjson|binary] [--search-cache-mb=N] [--option-search-mb=N]
+ *                         [--replan-at-blocker] [--repair-window=N] [--landmarks=k [--landmark-file=file]]
+ *                         [--checkpoint-interval=N] [--resume]
+ *                         [--metrics [--metrics-json=file]] objectiveFile...
+ */
+public class BatchRunner {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (Main.hasFlag(args, "metrics")) // Must be set before Metrics is used, it is read once
+            System.setProperty("magicalmap.metrics", "true");
+        Metrics.register();
+
+        File nodeFile = new File(Main.getOption(args, "nodes", "nodes-500-500.txt")); // File that stores node information
+        File edgeFile = new File(Main.getOption(args, "edges", "edges-500-500.txt")); // File that stores edge information
+        String binaryMap = Main.getOption(args, "binary-map", null); // Precompiled map file, if it is given text files are not read
+        int scenarioThreads = Integer.parseInt(Main.getOption(args, "scenario-threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int threadCount = Integer.parseInt(Main.getOption(args, "threads", String.valueOf(Runtime.getRuntime().availableProcessors()))); // Option evaluation threads of every scenario together
+        String plannerName = Main.getOption(args, "planner", "dijkstra");
+        String outputFormat = Main.getOption(args, "output-format", "text");
+        long searchCacheBytes = Long.parseLong(Main.getOption(args, "search-cache-mb", "256")) << 20; // Cached search trees of each scenario
+        long optionSearchBytes = Long.parseLong(Main.getOption(args, "option-search-mb", "0")) << 20; // Search of every option at once, 0 for one search per option
+        int heapArity = Integer.parseInt(Main.getOption(args, "heap-arity", "0")); // Priority queue of Dijkstra, 0 keeps the order of MinHeap<Pair>
+        boolean isReplanningAtBlocker = Main.hasFlag(args, "replan-at-blocker"); // Walk the valid part of an invalid path first
+        int repairWindow = Integer.parseInt(Main.getOption(args, "repair-window", "0")); // Repair invalid paths locally
+        int checkpointInterval = Integer.parseInt(Main.getOption(args, "checkpoint-interval", "0")); // Objectives between checkpoints
+        boolean isResuming = Main.hasFlag(args, "resume"); // Scenarios with a checkpoint continue from it
+
+        ArrayList<File> objectiveFiles = new ArrayList<>(); // Every argument that is not an option is a scenario
+        for (String arg : args) {
+            if (!arg.startsWith("--"))
+                objectiveFiles.add(new File(arg));
+        }
+
+        long loadStart = System.nanoTime();
+        long tileCacheBytes = Long.parseLong(Main.getOption(args, "tile-cache-mb", "0")) << 20; // Tiled binary map if positive
+        boolean verifyMap = Main.hasFlag(args, "verify-map"); // Checksum of the binary map is checked before any scenario runs
+        Graph graph = Main.loadGraph(binaryMap, nodeFile, edgeFile, tileCacheBytes, verifyMap); // Shared by every scenario, it is never modified
+        System.out.printf("Loaded %dx%d map in %.1f ms%n", graph.getRowCount(), graph.getColumnCount(), (System.nanoTime() - loadStart) / 1e6);
+        Landmarks landmarks = Main.loadLandmarks(args, graph, binaryMap, edgeFile, Runtime.getRuntime().availableProcessors()); // Shared too
+
+        ForkJoinPool optionPool = new ForkJoinPool(threadCount); // Shared, so N scenarios do not start N pools of threadCount threads
+        ArrayList<Callable<Void>> scenarios = new ArrayList<>();
+        for (File objectiveFile : objectiveFiles) {
+            File outputFile = outputFileOf(objectiveFile, outputFormat);
+            File checkpointFile = new File(outputFile.getPath() + ".ckpt"); // Checkpoint of the scenario, next to its output
+            scenarios.add(() -> {
+                Simulation simulation = new Simulation(graph, plannerName, false, threadCount);
+                simulation.setOptionPool(optionPool);
+                simulation.setSearchCacheBytes(searchCacheBytes);
+                simulation.setOptionSearchBytes(optionSearchBytes);
+                simulation.setHeapArity(heapArity);
+                simulation.setReplanningAtBlocker(isReplanningAtBlocker);
+                simulation.setRepairWindow(repairWindow);
+                simulation.setLandmarks(landmarks);
+                simulation.setCheckpoint(checkpointFile, checkpointInterval);
+                Checkpoint resume = null;
+                if (isResuming && checkpointFile.isFile()) {
+                    resume = Checkpoint.read(checkpointFile);
+                    resume.verify(graph, objectiveFile, simulation.getRunOptions(outputFormat)); // Before the output is cut back to the checkpoint
+                } else if (isResuming) {
+                    System.out.println("No checkpoint " + checkpointFile + ", " + objectiveFile + " starts from the first objective");
+                }
+                try (EventSink events = EventSink.create(outputFormat, outputFile, resume != null ? resume.getOutputLength() : 0)) {
+                    simulation.run(objectiveFile, events, resume);
+                }
+                return null;
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(scenarioThreads);
+        long start = System.nanoTime();
+        int failures = 0;
+        try {
+            List<Future<Void>> results = pool.invokeAll(scenarios); // Waits until every scenario is finished
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    failures++;
+                    System.out.println("Scenario " + objectiveFiles.get(i) + " failed: " + e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+            optionPool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Ran %d scenarios (%d failed) on %d threads in %.2f s, %.2f scenarios/s%n",
+                scenarios.size(), failures, scenarioThreads, seconds, scenarios.size() / seconds);
+        Metrics.dump(new File(Main.getOption(args, "metrics-json", "metrics.json"))); // Only written with --metrics
+    }
+
+    /**
+     * @return output file of a scenario, next to its objective file
+     */
+    private static File outputFileOf(File objectiveFile, String outputFormat) {
+        String name = objectiveFile.getName();
+        if (name.endsWith(".txt"))
+            name = name.substring(0, name.length() - 4);
+        return new File(objectiveFile.getAbsoluteFile().getParentFile(), name + ".output." + (outputFormat.equals("text") ? "txt" : outputFormat));
+    }
+
+}
@@ -0,0 +1,278 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Benchmarks of the hot parts of the simulation on a generated map: Main.dijkstra, MinHeap, MyHashSet, revealNodes and
+ * the whole objective loop, every benchmark reports the time and the bytes allocated per operation
+ * Maps are generated with MapGenerator in a directory that is reused by later runs with the same parameters
+ * Results can be saved and compared with a saved run, benchmark-baseline.txt is the checked-in one
+ * Usage: java BenchmarkSuite [--size=n] [--radius=r] [--objectives=k] [--blocked=ratio] [--special=ratio] [--dir=directory]
+ *                            [--only=name,...] [--save=file] [--baseline=file]
+ */
+public class BenchmarkSuite {
+    private static final int WARMUP_ITERATIONS = 5; // Iterations that are run before measuring so that the JIT compiles the code
+    private static final int MEASURED_ITERATIONS = 10; // Iterations that are measured
+    private static final int END_TO_END_ITERATIONS = 3; // Warmup and measured iterations of the end to end benchmark, one takes seconds
+    private static final long SEED = 1; // Seed of the generated map and of the random inputs
+
+    private final Graph graph; // Graph of the generated map
+    private final File objectiveFile; // Objective file of the generated map
+    private final int radius; // Radius of sight of the traveler
+
+
+    /**
+     * A benchmark runs its operation a fixed number of times per iteration
+     */
+    private interface Operation {
+        void run() throws IOException;
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        int size = Integer.parseInt(Main.getOption(args, "size", "500")); // Row and column count of the map
+        int radius = Integer.parseInt(Main.getOption(args, "radius", "20"));
+        int objectiveCount = Integer.parseInt(Main.getOption(args, "objectives", "20"));
+        double blockedDensity = Double.parseDouble(Main.getOption(args, "blocked", String.valueOf(MapGenerator.BLOCKED_DENSITY)));
+        double specialDensity = Double.parseDouble(Main.getOption(args, "special", String.valueOf(MapGenerator.SPECIAL_DENSITY)));
+        String only = Main.getOption(args, "only", null); // Comma separated names of the benchmarks to run, every one if null
+
+        // Generate the map once per parameters, the files are deterministic
+        String name = "bench-" + size + "-" + radius + "-" + objectiveCount + "-" + blockedDensity + "-" + specialDensity;
+        File directory = new File(Main.getOption(args, "dir", System.getProperty("java.io.tmpdir")), name);
+        String suffix = size + "-" + size;
+        File nodeFile = new File(directory, "nodes-" + suffix + ".txt");
+        File edgeFile = new File(directory, "edges-" + suffix + ".txt");
+        File objectiveFile = new File(directory, "obj-" + suffix + "-withRadius" + radius + ".txt");
+        if (!objectiveFile.exists()) {
+            directory.mkdirs();
+            System.out.println("Generating " + size + "x" + size + " map in " + directory);
+            int[] types = MapGenerator.generate(size, size, SEED, blockedDensity, specialDensity, nodeFile, edgeFile);
+            MapGenerator.generateObjectives(size, size, types, radius, objectiveCount, SEED, objectiveFile);
+        }
+
+        BenchmarkSuite suite = new BenchmarkSuite(MappedMapLoader.load(nodeFile, edgeFile, Runtime.getRuntime().availableProcessors()),
+                objectiveFile, radius);
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<double[]> results = new ArrayList<>(); // {ns/op, bytes/op} of each benchmark
+        for (String benchmark : new String[]{"dijkstra", "minHeap", "myHashSet", "revealNodes", "endToEnd"}) {
+            if (only != null && !Arrays.asList(only.split(",")).contains(benchmark))
+                continue;
+            names.add(benchmark);
+            results.add(suite.run(benchmark));
+        }
+
+        String baseline = Main.getOption(args, "baseline", null);
+        HashMap<String, double[]> baselineResults = baseline != null ? load(new File(baseline)) : new HashMap<>();
+        System.out.printf("%-12s %14s %14s%s%n", "benchmark", "ns/op", "bytes/op", baseline != null ? "   time vs baseline   alloc vs baseline" : "");
+        for (int i = 0; i < names.size(); i++) {
+            double[] result = results.get(i);
+            double[] expected = baselineResults.get(names.get(i));
+            String comparison = "";
+            if (expected != null) // Allocation ratio is only meaningful if the baseline allocated at least a byte per operation
+                comparison = String.format("   %17.2fx %20s", result[0] / expected[0], expected[1] >= 1 ? String.format("%.2fx", result[1] / expected[1]) : "-");
+            System.out.printf("%-12s %14.1f %14.1f%s%n", names.get(i), result[0], result[1], comparison);
+        }
+
+        String save = Main.getOption(args, "save", null);
+        if (save != null) {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(save))) {
+                writer.write("# benchmark ns/op bytes/op (" + name + ")\n");
+                for (int i = 0; i < names.size(); i++)
+                    writer.write(names.get(i) + " " + results.get(i)[0] + " " + results.get(i)[1] + "\n");
+            }
+        }
+    }
+
+    /**
+     * @param graph         Graph of the map
+     * @param objectiveFile Objective file of the map
+     * @param radius        Radius of sight of the traveler
+     */
+    BenchmarkSuite(Graph graph, File objectiveFile, int radius) {
+        this.graph = graph;
+        this.objectiveFile = objectiveFile;
+        this.radius = radius;
+    }
+
+
+    /**
+     * Prepares the inputs of the benchmark and measures its operation
+     * @return {ns/op, bytes/op}
+     */
+    private double[] run(String benchmark) throws IOException {
+        switch (benchmark) {
+            case "dijkstra":
+                return measure(dijkstra(), 20, WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+            case "minHeap":
+                return measure(minHeap(), 1, WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+            case "myHashSet":
+                return measure(myHashSet(), 1, WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+            case "revealNodes":
+                return measure(revealNodes(), 1000, WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+            case "endToEnd":
+                return measure(endToEnd(), 1, END_TO_END_ITERATIONS, END_TO_END_ITERATIONS);
+            default:
+                throw new IllegalArgumentException("Unknown benchmark: " + benchmark);
+        }
+    }
+
+    /**
+     * Main.dijkstra between random passable nodes, nothing is revealed and nothing is picked
+     */
+    private Operation dijkstra() {
+        VisibilityLayer visibility = new VisibilityLayer(graph.getRowCount(), graph.getColumnCount());
+        Node[][] nodes = Main.createNodes(graph, visibility, false);
+        SearchContext context = new SearchContext(graph.getRowCount(), graph.getColumnCount());
+        Random random = new Random(SEED);
+        Node[] starts = new Node[20];
+        Node[] ends = new Node[20];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = randomPassableNode(nodes, random);
+            ends[i] = randomPassableNode(nodes, random);
+        }
+        ArrayList<Node> path = new ArrayList<>();
+        return () -> {
+            for (int i = 0; i < starts.length; i++) {
+                path.clear();
+                Main.dijkstra(starts[i], ends[i], graph, nodes, visibility, path, type -> false, context);
+            }
+        };
+    }
+
+    /**
+     * MinHeap.insert of 100000 Pairs with random weights, then MinHeap.deleteMin until it is empty
+     */
+    private Operation minHeap() {
+        Node node = new Node(0, 0, graph, new VisibilityLayer(1, 1));
+        double[] weights = new Random(SEED).doubles(100_000).toArray();
+        MinHeap<Pair> heap = new MinHeap<>(weights.length + 1);
+        return () -> {
+            for (double weight : weights)
+                heap.insert(new Pair(node, weight));
+            while (!heap.isEmpty())
+                heap.deleteMin();
+        };
+    }
+
+    /**
+     * MyHashSet.insert of 1000 Integers into a new set, then 100000 MyHashSet.contains
+     */
+    private Operation myHashSet() {
+        int[] values = new Random(SEED).ints(1000, 0, 1 << 20).toArray();
+        int[] lookups = new Random(SEED + 1).ints(100_000, 0, 1 << 20).toArray();
+        int[] hits = new int[1];
+        return () -> {
+            MyHashSet<Integer> set = new MyHashSet<>();
+            for (int value : values)
+                set.insert(value);
+            for (int value : lookups) {
+                if (set.contains(value))
+                    hits[0]++;
+            }
+        };
+    }
+
+    /**
+     * Traveler.moveToNode (which calls revealNodes) on a random walk, the traveler turns back at the borders
+     */
+    private Operation revealNodes() {
+        int rowCount = graph.getRowCount();
+        int columnCount = graph.getColumnCount();
+        VisibilityLayer visibility = new VisibilityLayer(rowCount, columnCount);
+        Node[][] nodes = Main.createNodes(graph, visibility, false);
+        Traveler traveler = new Traveler(rowCount / 2, columnCount / 2, radius, graph, nodes, visibility);
+        PathIndex path = new PathIndex(rowCount, columnCount); // Nothing is on the path, only revealing is measured
+        IntSet pickedNumbers = new IntSet();
+        traveler.revealNodes(path, pickedNumbers, "all");
+        Random random = new Random(SEED);
+        return () -> {
+            for (int step = 0; step < 1000; step++) {
+                int x = traveler.getX();
+                int y = traveler.getY();
+                switch (random.nextInt(4)) {
+                    case 0: x = x + 1 < rowCount ? x + 1 : x - 1; break;
+                    case 1: x = x > 0 ? x - 1 : x + 1; break;
+                    case 2: y = y + 1 < columnCount ? y + 1 : y - 1; break;
+                    default: y = y > 0 ? y - 1 : y + 1; break;
+                }
+                traveler.moveToNode(nodes[x][y], path, pickedNumbers);
+            }
+        };
+    }
+
+    /**
+     * Whole objective loop of Main (Simulation.run) with the default planner, events are written to a temporary file
+     */
+    private Operation endToEnd() throws IOException {
+        File outputFile = Files.createTempFile("bench", ".txt").toFile();
+        outputFile.deleteOnExit();
+        return () -> {
+            try (EventSink events = EventSink.create("text", outputFile)) {
+                new Simulation(graph, "dijkstra", false, 1).run(objectiveFile, events);
+            }
+        };
+    }
+
+    /**
+     * Runs the warmup and the measured iterations of the operation
+     * @param operationsPerIteration Number of operations one call of the operation counts as
+     * @param warmupIterations       Calls before measuring
+     * @param measuredIterations     Calls that are measured
+     * @return {ns/op, bytes/op} averaged over the measured iterations, bytes/op is -1 if the JVM can not count allocations
+     */
+    private static double[] measure(Operation operation, int operationsPerIteration, int warmupIterations, int measuredIterations) throws IOException {
+        for (int i = 0; i < warmupIterations; i++)
+            operation.run();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < measuredIterations; i++)
+            operation.run();
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        double operations = (double) measuredIterations * operationsPerIteration;
+        return new double[]{elapsed / operations, allocatedBefore < 0 ? -1 : allocated / operations};
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, -1 if the JVM does not count them
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the results saved with --save
+     * @return {ns/op, bytes/op} of each benchmark by name
+     */
+    private static HashMap<String, double[]> load(File file) throws IOException {
+        HashMap<String, double[]> results = new HashMap<>();
+        for (String line : Files.readAllLines(file.toPath())) {
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] parts = line.split(" ");
+            results.put(parts[0], new double[]{Double.parseDouble(parts[1]), Double.parseDouble(parts[2])});
+        }
+        return results;
+    }
+
+    private static Node randomPassableNode(Node[][] nodes, Random random) {
+        while (true) {
+            Node node = nodes[random.nextInt(nodes.length)][random.nextInt(nodes[0].length)];
+            if (node.getType() != 1)
+                return node;
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+import java.util.ArrayList;
+
+/**
+ * Bidirectional Dijkstra, one search grows from the starting node and another one from the end node over the same undirected edges
+ * Entering a node costs the weight of the edge only if the node is passable, so the backward search relaxes the edges of a node
+ * only if that node is passable, the starting node itself is never required to be passable (like Main.dijkstra)
+ * Every time an edge connects the two searches, best = forward distance + weight + backward distance is updated,
+ * searches stop when the sum of their minimum keys is not smaller than best, then best is the shortest distance
+ */
+public class BidirectionalPlanner implements Planner {
+    private final Graph graph; // Graph of the map
+    private final Node[][] nodes; // 2-D Node array that stores every node
+    private final VisibilityLayer visibility; // Revealed flags of the nodes, read by the searches
+    private final SearchContext forward; // Distances from the starting node, previous nodes point towards the starting node
+    private final SearchContext backward; // Distances to the end node, previous nodes point towards the end node
+
+
+    /**
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     */
+    BidirectionalPlanner(Graph graph, Node[][] nodes, VisibilityLayer visibility) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.visibility = visibility;
+        this.forward = new SearchContext(graph.getRowCount(), graph.getColumnCount());
+        this.backward = new SearchContext(graph.getRowCount(), graph.getColumnCount());
+    }
+
+
+    @Override
+    public double findPath(Node startingNode, Node endNode, ArrayList<Node> path, IntSet pickedNumbers) {
+        if (endNode == null) // Early terminate condition
+            return 0;
+        int startIndex = forward.index(startingNode.getX(), startingNode.getY());
+        int endIndex = forward.index(endNode.getX(), endNode.getY());
+        if (startIndex == endIndex)
+            return 0;
+        forward.reset();
+        backward.reset();
+        IndexedMinHeap forwardQueue = forward.getPriorityQueue();
+        IndexedMinHeap backwardQueue = backward.getPriorityQueue();
+        forwardQueue.insert(startIndex, 0);
+        forward.update(startIndex, 0, startIndex);
+        backwardQueue.insert(endIndex, 0);
+        backward.update(endIndex, 0, endIndex);
+
+        double best = Double.MAX_VALUE; // Shortest distance of a path that goes through both searches so far
+        int meetingFrom = -1; // Edge of that path that connects the forward search (meetingFrom) to the backward search (meetingTo)
+        int meetingTo = -1;
+
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()
+                && forwardQueue.getMinKey() + backwardQueue.getMinKey() < best) {
+            if (forwardQueue.getMinKey() <= backwardQueue.getMinKey()) { // Expand the search with the smaller key
+                int u = forwardQueue.deleteMin();
+                double distance = forward.getTotalWeight(u);
+                forward.markVisited(u);
+                for (int e = graph.getEdgeStart(u); e < graph.getEdgeEnd(u); e++) {
+                    int v = graph.getTarget(e);
+                    if (forward.isVisited(v) || !Main.isPassable(graph, visibility, v, pickedNumbers)) // Entering v needs v to be passable
+                        continue;
+                    double totalWeight = distance + graph.getWeight(e);
+                    if (totalWeight < forward.getTotalWeight(v)) {
+                        forward.update(v, totalWeight, u);
+                        forwardQueue.insertOrDecrease(v, totalWeight);
+                    }
+                    double through = totalWeight + backward.getTotalWeight(v);
+                    if (backward.getTotalWeight(v) != Double.MAX_VALUE && through < best) {
+                        best = through;
+                        meetingFrom = u;
+                        meetingTo = v;
+                    }
+                }
+            } else {
+                int v = backwardQueue.deleteMin();
+                double distance = backward.getTotalWeight(v);
+                backward.markVisited(v);
+                if (!Main.isPassable(graph, visibility, v, pickedNumbers)) // No edge can enter v
+                    continue;
+                for (int e = graph.getEdgeStart(v); e < graph.getEdgeEnd(v); e++) {
+                    int u = graph.getTarget(e);
+                    if (backward.isVisited(u))
+                        continue;
+                    double totalWeight = distance + graph.getWeight(e);
+                    if (totalWeight < backward.getTotalWeight(u)) {
+                        backward.update(u, totalWeight, v);
+                        backwardQueue.insertOrDecrease(u, totalWeight);
+                    }
+                    double through = forward.getTotalWeight(u) + totalWeight;
+                    if (forward.getTotalWeight(u) != Double.MAX_VALUE && through < best) {
+                        best = through;
+                        meetingFrom = u;
+                        meetingTo = v;
+                    }
+                }
+            }
+        }
+
+        if (meetingFrom == -1) { // Not reachable, same path as Main.dijkstra gives
+            path.add(endNode);
+            return Double.MAX_VALUE;
+        }
+
+        // Path is given in reverse order: end node ... meetingTo, then meetingFrom ... the node after the starting node
+        ArrayList<Node> backwardPart = new ArrayList<>(); // meetingTo ... end node
+        int columnCount = graph.getColumnCount();
+        int current = meetingTo;
+        while (true) {
+            backwardPart.add(nodes[current / columnCount][current % columnCount]);
+            if (current == endIndex)
+                break;
+            current = backward.getPreviousNode(current);
+        }
+        for (int i = backwardPart.size() - 1; i >= 0; i--)
+            path.add(backwardPart.get(i));
+        forward.addPath(startIndex, meetingFrom, nodes, path);
+        return best;
+    }
+
+    @Override
+    public long getExpansions() {
+        return forward.getExpansions() + backward.getExpansions();
+    }
+
+}
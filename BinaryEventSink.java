@@ -0,0 +1,68 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+/**
+ * Writes the events in a compact binary form (little endian)
+ * header : magic, version (ints)
+ * event  : tag byte followed by its ints, MOVE x y, IMPASSABLE, CHOSEN number, REACHED objective
+ */
+public class BinaryEventSink extends ChannelEventSink {
+    private static final int MAGIC = 0x4D474556; // "MGEV"
+    private static final int VERSION = 1;
+    private static final int MAX_EVENT_SIZE = 9; // Tag byte and 2 ints
+
+    public static final byte MOVE = 1;
+    public static final byte IMPASSABLE = 2;
+    public static final byte CHOSEN = 3;
+    public static final byte REACHED = 4;
+
+
+    /**
+     * @param file         File to write the events, it is created or truncated
+     * @param resumeLength Length the file is cut to and continued from, 0 truncates it
+     */
+    BinaryEventSink(File file, long resumeLength) throws IOException {
+        super(file, resumeLength);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (resumeLength > 0) // Header is already in the file
+            return;
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+    }
+
+
+    @Override
+    public String getFormat() {
+        return "binary";
+    }
+
+    @Override
+    public void move(int x, int y) throws IOException {
+        ensureRemaining(MAX_EVENT_SIZE);
+        buffer.put(MOVE);
+        buffer.putInt(x);
+        buffer.putInt(y);
+    }
+
+    @Override
+    public void impassable() throws IOException {
+        ensureRemaining(MAX_EVENT_SIZE);
+        buffer.put(IMPASSABLE);
+    }
+
+    @Override
+    public void numberChosen(int number) throws IOException {
+        ensureRemaining(MAX_EVENT_SIZE);
+        buffer.put(CHOSEN);
+        buffer.putInt(number);
+    }
+
+    @Override
+    public void objectiveReached(int objective) throws IOException {
+        ensureRemaining(MAX_EVENT_SIZE);
+        buffer.put(REACHED);
+        buffer.putInt(objective);
+    }
+
+}
@@ -0,0 +1,253 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Precompiled binary map format, a map is converted once from the text files and then memory-mapped on every start
+ * Layout (little endian), every section starts at a multiple of 8 bytes:
+ * header   : magic, version, rowCount, columnCount, edgeCount, typeWidth (ints), checksum (long) = 32 bytes
+ * types    : nodeCount types of typeWidth (1 or 4) bytes
+ * offsets  : nodeCount+1 ints, edges of node i are in [offsets[i], offsets[i+1])
+ * targets  : edgeCount ints
+ * weights  : edgeCount doubles
+ * checksum is the CRC32 of every byte after the header
+ * Usage (conversion): java BinaryMap nodeFile edgeFile binaryFile
+ */
+public class BinaryMap {
+    private static final int MAGIC = 0x4D47434D; // "MGCM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int CHUNK_SIZE = 1 << 20; // Bytes written at a time
+
+
+    public static void main(String[] args) throws IOException {
+        File nodeFile = new File(args[0]); // File that stores node information
+        File edgeFile = new File(args[1]); // File that stores edge information
+        File binaryFile = new File(args[2]); // File to write the binary map
+        long start = System.nanoTime();
+        Graph graph = MappedMapLoader.load(nodeFile, edgeFile, Runtime.getRuntime().availableProcessors());
+        write(graph, binaryFile);
+        System.out.printf("Converted %dx%d map in %.1f ms%n", graph.getRowCount(), graph.getColumnCount(), (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Writes the graph in the binary map format
+     * @param graph      Graph of the map
+     * @param binaryFile File to write
+     */
+    public static void write(Graph graph, File binaryFile) throws IOException {
+        int nodeCount = graph.getRowCount() * graph.getColumnCount();
+        int edgeCount = graph.getEdgeEnd(nodeCount - 1);
+        boolean byteTypes = true; // Types are written in 1 byte if every one of them fits
+        for (int node = 0; node < nodeCount && byteTypes; node++)
+            byteTypes = graph.getType(node) >= Byte.MIN_VALUE && graph.getType(node) <= Byte.MAX_VALUE;
+
+        try (RandomAccessFile file = new RandomAccessFile(binaryFile, "rw")) {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 checksum = new CRC32();
+            channel.position(HEADER_SIZE); // Header is written at the end, when the checksum is known
+
+            for (int node = 0; node < nodeCount; node++) {
+                if (buffer.remaining() < 8)
+                    flush(buffer, channel, checksum);
+                if (byteTypes)
+                    buffer.put((byte) graph.getType(node));
+                else
+                    buffer.putInt(graph.getType(node));
+            }
+            pad(buffer, channel, checksum);
+            for (int node = 0; node <= nodeCount; node++) {
+                if (buffer.remaining() < 8)
+                    flush(buffer, channel, checksum);
+                buffer.putInt(node == nodeCount ? edgeCount : graph.getEdgeStart(node));
+            }
+            pad(buffer, channel, checksum);
+            for (int edge = 0; edge < edgeCount; edge++) {
+                if (buffer.remaining() < 8)
+                    flush(buffer, channel, checksum);
+                buffer.putInt(graph.getTarget(edge));
+            }
+            pad(buffer, channel, checksum);
+            for (int edge = 0; edge < edgeCount; edge++) {
+                if (buffer.remaining() < 8)
+                    flush(buffer, channel, checksum);
+                buffer.putDouble(graph.getWeight(edge));
+            }
+            flush(buffer, channel, checksum);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(graph.getRowCount()).putInt(graph.getColumnCount());
+            buffer.putInt(edgeCount).putInt(byteTypes ? 1 : 4).putLong(checksum.getValue());
+            buffer.flip();
+            channel.write(buffer, 0);
+        }
+    }
+
+    /**
+     * Memory-maps a binary map file, sections are served to the searches without being copied
+     * @param binaryFile     Binary map file
+     * @param verifyChecksum If true, every byte is read once to compare the checksum
+     * @return graph of the map, nodes are indexed by x*columnCount+y
+     * @throws FileNotFoundException if the file cannot be found
+     * @throws IOException if the file is not a valid binary map
+     */
+    public static Graph load(File binaryFile, boolean verifyChecksum) throws IOException {
+        // The mappings stay valid after the file is closed
+        try (RandomAccessFile file = new RandomAccessFile(binaryFile, "r")) {
+            FileChannel channel = file.getChannel();
+            Layout layout = readLayout(channel, binaryFile);
+            MappedByteBuffer types = map(channel, layout.typesStart, padded(layout.typesLength));
+            MappedByteBuffer offsets = map(channel, layout.offsetsStart, padded(layout.offsetsLength));
+            MappedByteBuffer targets = map(channel, layout.targetsStart, padded(layout.targetsLength));
+            MappedByteBuffer weights = map(channel, layout.weightsStart, layout.weightsLength);
+
+            if (verifyChecksum) {
+                CRC32 checksum = new CRC32();
+                for (MappedByteBuffer section : new MappedByteBuffer[]{types, offsets, targets, weights})
+                    checksum.update(section.duplicate());
+                if (checksum.getValue() != layout.checksum)
+                    throw new IOException("Checksum mismatch, binary map is corrupted: " + binaryFile);
+            }
+
+            return new MappedGraph(layout.rowCount, layout.columnCount,
+                    layout.typeWidth == 1 ? section(types, layout.typesLength) : null,
+                    layout.typeWidth == 1 ? null : section(types, layout.typesLength).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(),
+                    section(offsets, layout.offsetsLength).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(),
+                    section(targets, layout.targetsLength).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(),
+                    section(weights, layout.weightsLength).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer());
+        }
+    }
+
+    /**
+     * Opens a binary map as a TiledGraph, tiles are read from the file when they are first used
+     * No section is mapped, so the map can be larger than the address space a mapping allows, and the checksum is not verified
+     * since it would read the whole file
+     * @param binaryFile  Binary map file, it stays open while the graph is used
+     * @param budgetBytes Memory the loaded tiles may use
+     * @return graph of the map, nodes are indexed by x*columnCount+y
+     * @throws FileNotFoundException if the file cannot be found
+     * @throws IOException if the file is not a valid binary map
+     */
+    public static Graph loadTiled(File binaryFile, long budgetBytes) throws IOException {
+        FileChannel channel = new RandomAccessFile(binaryFile, "r").getChannel();
+        try {
+            Layout layout = readLayout(channel, binaryFile);
+            return new TiledGraph(channel, layout.rowCount, layout.columnCount, layout.typeWidth,
+                    layout.typesStart, layout.offsetsStart, layout.targetsStart, layout.weightsStart, layout.checksum, budgetBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the header and computes where every section starts
+     * @throws IOException if the file is not a valid binary map
+     */
+    private static Layout readLayout(FileChannel channel, File binaryFile) throws IOException {
+        if (channel.size() < HEADER_SIZE)
+            throw new IOException("Not a binary map: " + binaryFile);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        if (header.getInt() != MAGIC || header.getInt() != VERSION)
+            throw new IOException("Not a binary map or unsupported version: " + binaryFile);
+        Layout layout = new Layout();
+        layout.rowCount = header.getInt();
+        layout.columnCount = header.getInt();
+        int edgeCount = header.getInt();
+        layout.typeWidth = header.getInt();
+        layout.checksum = header.getLong();
+        long nodeCount = (long) layout.rowCount * layout.columnCount;
+
+        layout.typesLength = nodeCount * layout.typeWidth;
+        layout.offsetsLength = (nodeCount + 1) * 4;
+        layout.targetsLength = (long) edgeCount * 4;
+        layout.weightsLength = (long) edgeCount * 8;
+        layout.typesStart = HEADER_SIZE;
+        layout.offsetsStart = layout.typesStart + padded(layout.typesLength);
+        layout.targetsStart = layout.offsetsStart + padded(layout.offsetsLength);
+        layout.weightsStart = layout.targetsStart + padded(layout.targetsLength);
+        if (channel.size() != layout.weightsStart + layout.weightsLength)
+            throw new IOException("Binary map is truncated: " + binaryFile);
+        return layout;
+    }
+
+    /**
+     * Fills the buffer from the given position of the file and flips it for reading
+     * @throws IOException if the file ends before the buffer is full
+     */
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new IOException("Unexpected end of binary map");
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Maps a read-only region of the file, one region is limited to 2 GB
+     */
+    private static MappedByteBuffer map(FileChannel channel, long start, long length) throws IOException {
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("Section of " + length + " bytes is too large to be mapped at once");
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+    }
+
+    /**
+     * @return the first length bytes of the mapped section, without its padding
+     */
+    private static ByteBuffer section(MappedByteBuffer mapped, long length) {
+        ByteBuffer slice = mapped.duplicate();
+        slice.limit((int) length);
+        return slice.slice();
+    }
+
+    /**
+     * @return length rounded up to a multiple of 8
+     */
+    private static long padded(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    /**
+     * Sizes and positions read from the header of a binary map
+     */
+    private static final class Layout {
+        int rowCount;
+        int columnCount;
+        int typeWidth; // 1 or 4 bytes
+        long checksum; // CRC32 of every byte after the header
+        long typesLength, offsetsLength, targetsLength, weightsLength; // Lengths of the sections without padding
+        long typesStart, offsetsStart, targetsStart, weightsStart; // Positions of the sections in the file
+    }
+
+    /**
+     * Writes zero bytes until the file length is a multiple of 8, so that the next section starts aligned
+     */
+    private static void pad(ByteBuffer buffer, FileChannel channel, CRC32 checksum) throws IOException {
+        while ((channel.position() + buffer.position()) % 8 != 0)
+            buffer.put((byte) 0);
+        flush(buffer, channel, checksum);
+    }
+
+    /**
+     * Writes the buffered bytes to the channel and adds them to the checksum
+     */
+    private static void flush(ByteBuffer buffer, FileChannel channel, CRC32 checksum) throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+}
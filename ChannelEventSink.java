@@ -0,0 +1,97 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Base of the sinks that encode events straight into a large direct buffer, the buffer is written to the file channel
+ * only when it can not hold the next event, so millions of events cost a few system calls and no String per event
+ */
+public abstract class ChannelEventSink implements EventSink {
+    private static final int BUFFER_SIZE = 1 << 20; // Bytes buffered before a write
+    private static final byte[] MIN_VALUE = Integer.toString(Integer.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel; // Channel of the output file
+    protected final ByteBuffer buffer; // Events encoded since the last write
+
+
+    /**
+     * @param file         File to write the events, it is created or truncated
+     * @param resumeLength Length the file is cut to and continued from, 0 truncates it
+     */
+    ChannelEventSink(File file, long resumeLength) throws IOException {
+        if (resumeLength == 0) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } else {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+            if (channel.size() < resumeLength) {
+                channel.close();
+                throw new IOException("Output file is shorter than at the checkpoint: " + file);
+            }
+            channel.truncate(resumeLength); // Events written after the checkpoint are written again by the resumed run
+            channel.position(resumeLength);
+        }
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+
+    /**
+     * Writes the buffer to the channel if fewer than the given bytes are left in it
+     * @param bytes Maximum size of the event that will be encoded next
+     */
+    protected void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes)
+            flush();
+    }
+
+    /**
+     * Writes every buffered byte to the channel
+     */
+    protected void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Puts the decimal digits of the value, at most 11 bytes
+     */
+    protected void putDecimal(int value) {
+        if (value == Integer.MIN_VALUE) { // Can not be negated
+            buffer.put(MIN_VALUE);
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int divisor = 1;
+        while (divisor <= value / 10)
+            divisor *= 10;
+        for (; divisor > 0; divisor /= 10)
+            buffer.put((byte) ('0' + value / divisor % 10));
+    }
+
+    /**
+     * @return ASCII bytes of a constant part of the encoding
+     */
+    protected static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public long checkpoint() throws IOException {
+        flush();
+        return channel.position();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+}
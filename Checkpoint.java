@@ -0,0 +1,314 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * State of a simulation between two objectives, enough to resume an interrupted run from the next objective
+ * Taken after an objective is reached, when the search state of the planners is reset anyway, so a resumed run
+ * writes exactly the events the uninterrupted run would have written
+ * File layout (little endian):
+ * header  : magic, version, rowCount, columnCount, nextObjective, travelerX, travelerY, pickedCount, optionCount,
+ *           radius (ints), outputLength, inputHash (longs), revealedLength, runOptionsLength (ints) = 64 bytes
+ * run     : runOptionsLength ASCII bytes, the options of the run that change its output, from Simulation.getRunOptions
+ * picked  : pickedCount ints
+ * options : optionCount ints, the wizard's offer that comes with the next objective
+ * revealed: words of the VisibilityLayer compressed with Deflater, revealedLength bytes
+ * The file is written next to its final name and moved over it, so a crash while writing keeps the previous checkpoint
+ * inputHash covers the map and the objective file, a checkpoint is only resumed with the inputs it was taken from,
+ * and with the run options it was taken with, since a resumed run with other options would not continue the same output
+ */
+public class Checkpoint {
+    private static final int MAGIC = 0x4D474350; // "MGCP"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 64;
+    private static final int CHUNK_SIZE = 1 << 16; // Bytes hashed at a time
+
+    private final int rowCount; // Row count of the grid
+    private final int columnCount; // Column count of the grid
+    private final int nextObjective; // 0-based index of the first objective that is not reached
+    private final int travelerX; // X coordinate of the traveler
+    private final int travelerY; // Y coordinate of the traveler
+    private final int[] pickedNumbers; // Numbers picked from wizard's offers so far
+    private final int[] options; // Options carried to the next objective
+    private final int radius; // Radius of sight of the run
+    private final long outputLength; // Bytes of the output file written up to this checkpoint
+    private final long inputHash; // Hash of the map and the objective file, from hashInputs
+    private final String runOptions; // Options of the run that change its output, "name=value" separated by spaces
+    private final long[] revealed; // Words of the revealed flags
+
+
+    /**
+     * @param rowCount      Row count of the grid
+     * @param columnCount   Column count of the grid
+     * @param nextObjective 0-based index of the first objective that is not reached
+     * @param travelerX     X coordinate of the traveler
+     * @param travelerY     Y coordinate of the traveler
+     * @param pickedNumbers Numbers picked from wizard's offers so far
+     * @param options       Options carried to the next objective
+     * @param radius        Radius of sight of the run
+     * @param outputLength  Bytes of the output file written up to this checkpoint
+     * @param inputHash     Hash of the map and the objective file, from hashInputs
+     * @param runOptions    Options of the run that change its output, from Simulation.getRunOptions
+     * @param revealed      Words of the revealed flags, from VisibilityLayer.snapshot
+     */
+    Checkpoint(int rowCount, int columnCount, int nextObjective, int travelerX, int travelerY, int[] pickedNumbers,
+               int[] options, int radius, long outputLength, long inputHash, String runOptions, long[] revealed) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.nextObjective = nextObjective;
+        this.travelerX = travelerX;
+        this.travelerY = travelerY;
+        this.pickedNumbers = pickedNumbers;
+        this.options = options;
+        this.radius = radius;
+        this.outputLength = outputLength;
+        this.inputHash = inputHash;
+        this.runOptions = runOptions;
+        this.revealed = revealed;
+    }
+
+
+    /**
+     * Writes the checkpoint, the previous one stays in place until the new one is complete
+     * @param file Checkpoint file
+     */
+    public void write(File file) throws IOException {
+        byte[] compressed = compress(revealed);
+        byte[] run = runOptions.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + run.length + 4 * (pickedNumbers.length + options.length) + compressed.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(rowCount).putInt(columnCount).putInt(nextObjective);
+        buffer.putInt(travelerX).putInt(travelerY).putInt(pickedNumbers.length).putInt(options.length).putInt(radius);
+        buffer.putLong(outputLength).putLong(inputHash).putInt(compressed.length).putInt(run.length);
+        buffer.put(run);
+        for (int number : pickedNumbers)
+            buffer.putInt(number);
+        for (int option : options)
+            buffer.putInt(option);
+        buffer.put(compressed);
+        buffer.flip();
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(false); // On disk before it replaces the previous checkpoint
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param file Checkpoint file
+     * @return checkpoint read from the file
+     * @throws IOException if the file is not a checkpoint
+     */
+    public static Checkpoint read(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            throw new IOException("Not a checkpoint or unsupported version: " + file);
+        int rowCount = buffer.getInt();
+        int columnCount = buffer.getInt();
+        int nextObjective = buffer.getInt();
+        int travelerX = buffer.getInt();
+        int travelerY = buffer.getInt();
+        int[] pickedNumbers = new int[buffer.getInt()];
+        int[] options = new int[buffer.getInt()];
+        int radius = buffer.getInt();
+        long outputLength = buffer.getLong();
+        long inputHash = buffer.getLong();
+        int revealedLength = buffer.getInt();
+        int runOptionsLength = buffer.getInt();
+        if (buffer.remaining() != (long) runOptionsLength + 4L * (pickedNumbers.length + options.length) + revealedLength)
+            throw new IOException("Checkpoint is truncated: " + file);
+        byte[] run = new byte[runOptionsLength];
+        buffer.get(run);
+        for (int i = 0; i < pickedNumbers.length; i++)
+            pickedNumbers[i] = buffer.getInt();
+        for (int i = 0; i < options.length; i++)
+            options[i] = buffer.getInt();
+        byte[] compressed = new byte[revealedLength];
+        buffer.get(compressed);
+        long[] revealed = decompress(compressed, (int) (((long) rowCount * columnCount + 63) >>> 6), file);
+        return new Checkpoint(rowCount, columnCount, nextObjective, travelerX, travelerY, pickedNumbers, options, radius,
+                outputLength, inputHash, new String(run, StandardCharsets.US_ASCII), revealed);
+    }
+
+    /**
+     * Checks that the checkpoint was taken from a run over the same map and objective file with the same options,
+     * before the output is cut
+     * @param graph         Graph of the map of the run to resume
+     * @param objectiveFile Objective file of the run to resume
+     * @param runOptions    Options of the run to resume, from Simulation.getRunOptions
+     * @throws IOException if the inputs or the options are not the ones of the checkpoint
+     */
+    public void verify(Graph graph, File objectiveFile, String runOptions) throws IOException {
+        if (!this.runOptions.equals(runOptions)) {
+            String[] taken = this.runOptions.split(" ");
+            String[] given = runOptions.split(" ");
+            for (int i = 0; i < Math.min(taken.length, given.length); i++) { // Names are in the same order, report the first difference
+                if (!taken[i].equals(given[i]))
+                    throw new IOException("Checkpoint was taken with --" + taken[i] + ", the run has --" + given[i]);
+            }
+            throw new IOException("Checkpoint was taken with the options " + this.runOptions + ", the run has " + runOptions);
+        }
+        if (rowCount != graph.getRowCount() || columnCount != graph.getColumnCount())
+            throw new IOException("Checkpoint is of a " + rowCount + "x" + columnCount + " map, not of a "
+                    + graph.getRowCount() + "x" + graph.getColumnCount() + " one");
+        int objectiveRadius; // First line of the objective file is the radius of sight
+        try (BufferedReader reader = Files.newBufferedReader(objectiveFile.toPath())) {
+            objectiveRadius = Integer.parseInt(reader.readLine().trim());
+        }
+        if (objectiveRadius != radius)
+            throw new IOException("Checkpoint was taken with radius of sight " + radius + ", the objective file has " + objectiveRadius);
+        if (hashInputs(graph, objectiveFile) != inputHash)
+            throw new IOException("Checkpoint was taken with another map or objective file");
+    }
+
+    /**
+     * CRC32 of everything a run depends on: size, types, edges and weights of the map and the bytes of the objective file
+     * Reads the whole map once, so it is computed once per run, except for a TiledGraph: reading it would load every tile,
+     * so its map is covered by the checksum in the header of its file instead (a checkpoint of a tiled run is then only
+     * resumed with the tiled map)
+     * @param graph         Graph of the map
+     * @param objectiveFile Objective file of the run
+     * @return hash of the inputs
+     */
+    public static long hashInputs(Graph graph, File objectiveFile) throws IOException {
+        int nodeCount = graph.getRowCount() * graph.getColumnCount();
+        CRC32 checksum = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(graph.getRowCount()).putInt(graph.getColumnCount());
+        if (graph instanceof TiledGraph) { // -1 can not be a type, so the hash differs from the one of the walked map
+            buffer.putInt(-1).putLong(((TiledGraph) graph).getChecksum());
+            nodeCount = 0;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            if (buffer.remaining() < 8) {
+                buffer.flip();
+                checksum.update(buffer);
+                buffer.clear();
+            }
+            buffer.putInt(graph.getType(node));
+            int edgeEnd = graph.getEdgeEnd(node);
+            for (int e = graph.getEdgeStart(node); e < edgeEnd; e++) {
+                if (buffer.remaining() < 12) {
+                    buffer.flip();
+                    checksum.update(buffer);
+                    buffer.clear();
+                }
+                buffer.putInt(graph.getTarget(e)).putDouble(graph.getWeight(e));
+            }
+        }
+        buffer.flip();
+        checksum.update(buffer);
+        checksum.update(Files.readAllBytes(objectiveFile.toPath()));
+        return checksum.getValue();
+    }
+
+    /**
+     * Deflates the words, revealed flags form a few solid regions along the walked paths, so they shrink to a small fraction
+     */
+    private static byte[] compress(long[] words) {
+        ByteBuffer raw = ByteBuffer.allocate(words.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        raw.asLongBuffer().put(words);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(raw.array());
+        deflater.finish();
+        byte[] output = new byte[Math.max(64, words.length)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == output.length)
+                output = Arrays.copyOf(output, 2 * length);
+            length += deflater.deflate(output, length, output.length - length);
+        }
+        deflater.end();
+        return Arrays.copyOf(output, length);
+    }
+
+    private static long[] decompress(byte[] compressed, int wordCount, File file) throws IOException {
+        byte[] raw = new byte[wordCount * 8];
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        try {
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                length += inflated;
+            }
+            if (length != raw.length || !inflater.finished())
+                throw new IOException("Revealed flags of the checkpoint are corrupted: " + file);
+        } catch (DataFormatException e) {
+            throw new IOException("Revealed flags of the checkpoint are corrupted: " + file, e);
+        } finally {
+            inflater.end();
+        }
+        long[] words = new long[wordCount];
+        ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(words);
+        return words;
+    }
+
+
+    // Getters
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public int getNextObjective() {
+        return nextObjective;
+    }
+
+    public int getTravelerX() {
+        return travelerX;
+    }
+
+    public int getTravelerY() {
+        return travelerY;
+    }
+
+    public int[] getPickedNumbers() {
+        return pickedNumbers;
+    }
+
+    /**
+     * @return options carried to the next objective, as the list the simulation keeps
+     */
+    public ArrayList<Integer> getOptions() {
+        ArrayList<Integer> list = new ArrayList<>();
+        for (int option : options)
+            list.add(option);
+        return list;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public long getOutputLength() {
+        return outputLength;
+    }
+
+    public long[] getRevealed() {
+        return revealed;
+    }
+
+}
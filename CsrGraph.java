@@ -0,0 +1,99 @@
+/**
+ * Immutable graph in compressed sparse row form
+ * Edges of node i are stored in targets/weights between offsets[i] (inclusive) and offsets[i+1] (exclusive),
+ * so the inner loop of Dijkstra reads a few primitive arrays instead of following Pair and Node objects
+ */
+public class CsrGraph implements Graph {
+    private final int rowCount; // Row count of the grid
+    private final int columnCount; // Column count of the grid
+
+    private final int[] types; // Type of each node
+    private final int[] offsets; // Index of the first edge of each node, offsets[nodeCount] is the edge count
+    private final int[] targets; // Node each edge goes to
+    private final double[] weights; // Weight of each edge
+    private final double minWeightPerStep; // Scale of the Manhattan heuristic, computed once at load time
+
+
+    /**
+     * Builds the graph from undirected edges, every edge is stored in both directions
+     * Edges of a node keep the order in which they are given
+     * @param rowCount    Row count of the grid
+     * @param columnCount Column count of the grid
+     * @param types       Type of each node, indexed by x*columnCount+y
+     * @param edgeCount   Number of undirected edges
+     * @param ends1       1st end of each edge
+     * @param ends2       2nd end of each edge
+     * @param edgeWeights Weight of each edge
+     */
+    CsrGraph(int rowCount, int columnCount, int[] types, int edgeCount, int[] ends1, int[] ends2, double[] edgeWeights) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.types = types;
+        int nodeCount = rowCount * columnCount;
+
+        // Count the degree of every node, offsets[i+1] temporarily stores the degree of node i
+        offsets = new int[nodeCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            offsets[ends1[e] + 1]++;
+            offsets[ends2[e] + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) // Prefix sums turn degrees into offsets
+            offsets[i + 1] += offsets[i];
+
+        targets = new int[2 * edgeCount];
+        weights = new double[2 * edgeCount];
+        int[] cursors = new int[nodeCount]; // Next free edge slot of every node
+        System.arraycopy(offsets, 0, cursors, 0, nodeCount);
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = cursors[ends1[e]]++; // {end2, weight} goes to end1's edges
+            targets[slot] = ends2[e];
+            weights[slot] = edgeWeights[e];
+            slot = cursors[ends2[e]]++; // {end1, weight} goes to end2's edges
+            targets[slot] = ends1[e];
+            weights[slot] = edgeWeights[e];
+        }
+        minWeightPerStep = Graph.computeMinWeightPerStep(this);
+    }
+
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public int getType(int node) {
+        return types[node];
+    }
+
+    @Override
+    public int getEdgeStart(int node) {
+        return offsets[node];
+    }
+
+    @Override
+    public int getEdgeEnd(int node) {
+        return offsets[node + 1];
+    }
+
+    @Override
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    @Override
+    public double getWeight(int edge) {
+        return weights[edge];
+    }
+
+    @Override
+    public double getMinWeightPerStep() {
+        return minWeightPerStep;
+    }
+
+}
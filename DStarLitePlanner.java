@@ -0,0 +1,267 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Incremental planner (D* Lite) that keeps its search state while the traveler walks towards one objective
+ * The search runs backwards from the objective, g(s) is the distance from s to the objective
+ * When revealNodes reveals a node that blocks the way, only the neighbours of that node are updated and
+ * the inconsistent part of the search is repaired instead of running Dijkstra again from scratch
+ * Heuristic is 0, so keys are single numbers min(g, rhs) and the key modifier of D* Lite is always 0
+ * g is summed backwards, so it can not tell which of two paths of equal cost Dijkstra takes: if a node of the extracted path
+ * has a second neighbour within a rounding tolerance of the best one, the path is planned by Main.dijkstra instead,
+ * otherwise the shortest path is unique and is Dijkstra's, its cost is summed forwards like Dijkstra sums it
+ */
+public class DStarLitePlanner implements Planner {
+    private static final double INFINITY = Double.POSITIVE_INFINITY;
+    private static final double TIE_TOLERANCE = 1e-9; // Relative difference under which two ways are taken as equal, far above rounding errors
+
+    private final Graph graph; // Graph of the map
+    private final Node[][] nodes; // 2-D Node array that stores every node
+    private final VisibilityLayer visibility; // Revealed flags of the nodes, read by the searches
+    private final int columnCount; // Column count of the grid
+
+    private final double[] g; // Distance from each node to the objective found so far
+    private final double[] rhs; // One step lookahead of g, node is consistent if g == rhs
+    private final int[] stamps; // Epoch in which g and rhs slots were last written, other slots are INFINITY
+    private final IndexedMinHeap queue; // Inconsistent nodes by min(g, rhs)
+    private SearchContext fallbackContext; // Working arrays of the Dijkstra searches of paths with ties, created on first use
+
+    private int epoch; // Current epoch, every objective starts with a new one
+    private int goal; // Flat index of the objective, -1 if the planner has to be initialized
+    private IntPredicate pickedNumbers; // Numbers picked from wizard's offer, they do not change while goal is the same
+
+    private int[] pendingNodes = new int[16]; // Special nodes revealed since the last plan
+    private int pendingCount;
+
+    private long expansions; // Number of nodes extracted from the queue so far
+    private long fallbackExpansions; // Number of nodes expanded by the Dijkstra searches so far
+
+
+    /**
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     */
+    DStarLitePlanner(Graph graph, Node[][] nodes, VisibilityLayer visibility) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.visibility = visibility;
+        this.columnCount = graph.getColumnCount();
+        int size = graph.getRowCount() * columnCount;
+        g = new double[size];
+        rhs = new double[size];
+        stamps = new int[size];
+        queue = new IndexedMinHeap(size, 4);
+        epoch = 0;
+        goal = -1;
+    }
+
+
+    /**
+     * Forgets the search state, must be called when the picked numbers change, next plan starts from scratch
+     */
+    @Override
+    public void reset() {
+        goal = -1;
+        pendingCount = 0;
+    }
+
+    /**
+     * Called by the traveler when a node of type greater than 1 is revealed for the first time
+     * @param node flat index of the node
+     */
+    @Override
+    public void nodeRevealed(int node) {
+        if (goal == -1) // Next plan starts from scratch and reads revealed flags anyway
+            return;
+        if (pendingCount == pendingNodes.length)
+            pendingNodes = Arrays.copyOf(pendingNodes, 2 * pendingCount);
+        pendingNodes[pendingCount++] = node;
+    }
+
+    /**
+     * Finds the shortest path from startingNode to endNode, reusing the search of the previous call if endNode is the same
+     * @param startingNode  Node where the traveler stands
+     * @param endNode       Node of the objective
+     * @param path          Shortest path is added to it in reverse order, like Main.dijkstra does
+     * @param pickedNumbers Test of the numbers picked from wizard's offer(they will be treated as type 0)
+     * @return total path distance of the shortest path, Double.MAX_VALUE if endNode is not reachable
+     */
+    @Override
+    public double findPath(Node startingNode, Node endNode, ArrayList<Node> path, IntSet pickedNumbers) {
+        int start = startingNode.getX() * columnCount + startingNode.getY();
+        int end = endNode.getX() * columnCount + endNode.getY();
+        if (end != goal) {
+            initialize(end, pickedNumbers);
+        } else {
+            // Edges entering a newly blocked node became infinite, their sources have to be updated
+            for (int i = 0; i < pendingCount; i++) {
+                int node = pendingNodes[i];
+                if (isPassable(node))
+                    continue;
+                for (int e = graph.getEdgeStart(node); e < graph.getEdgeEnd(node); e++)
+                    updateVertex(graph.getTarget(e));
+            }
+        }
+        pendingCount = 0;
+
+        computeShortestPath(start);
+
+        if (start == end)
+            return 0;
+        if (getRhs(start) == INFINITY) { // Not reachable, same path as Main.dijkstra gives
+            path.add(endNode);
+            return Double.MAX_VALUE;
+        }
+
+        // Follow the neighbour that minimizes edge cost + g from start to goal
+        ArrayList<Node> forwardPath = new ArrayList<>();
+        double distance = 0; // Summed from start like Dijkstra sums it
+        int current = start;
+        while (current != goal && forwardPath.size() < g.length) {
+            int next = -1;
+            double best = INFINITY, second = INFINITY; // Two smallest edge cost + g among the neighbours
+            double weight = 0; // Weight of the edge to next
+            for (int e = graph.getEdgeStart(current); e < graph.getEdgeEnd(current); e++) {
+                double cost = cost(e) + getG(graph.getTarget(e));
+                if (cost < best) {
+                    second = best;
+                    best = cost;
+                    next = graph.getTarget(e);
+                    weight = graph.getWeight(e);
+                } else if (cost < second) {
+                    second = cost;
+                }
+            }
+            if (next == -1)
+                break;
+            if (second - best <= TIE_TOLERANCE * Math.max(1, best)) // Another shortest path may be Dijkstra's
+                return fallback(startingNode, endNode, path, pickedNumbers);
+            forwardPath.add(nodes[next / columnCount][next % columnCount]);
+            distance += weight;
+            current = next;
+        }
+        for (int i = forwardPath.size() - 1; i >= 0; i--)
+            path.add(forwardPath.get(i));
+        return distance;
+    }
+
+    /**
+     * Plans the path with Main.dijkstra, the search state of this planner is kept for the next plan
+     */
+    private double fallback(Node startingNode, Node endNode, ArrayList<Node> path, IntSet pickedNumbers) {
+        if (fallbackContext == null)
+            fallbackContext = new SearchContext(graph.getRowCount(), columnCount, 0);
+        Metrics.add(Metrics.Counter.DSTAR_FALLBACKS, 1);
+        long before = fallbackContext.getExpansions();
+        double distance = Main.dijkstra(startingNode, endNode, graph, nodes, visibility, path, pickedNumbers, fallbackContext);
+        fallbackExpansions += fallbackContext.getExpansions() - before;
+        return distance;
+    }
+
+    /**
+     * Starts a new search towards the goal in O(1) by moving to the next epoch
+     */
+    private void initialize(int end, IntPredicate pickedNumbers) {
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) { // Stamps would overflow, clear them once and start over
+            Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+        queue.clear();
+        this.goal = end;
+        this.pickedNumbers = pickedNumbers;
+        setRhs(end, 0);
+        queue.insert(end, 0);
+    }
+
+    /**
+     * Expands inconsistent nodes until the start node is consistent and no smaller key is left
+     */
+    private void computeShortestPath(int start) {
+        while (!queue.isEmpty() && (queue.getMinKey() < key(start) || getRhs(start) != getG(start))) {
+            int u = queue.deleteMin();
+            expansions++;
+            if (getG(u) > getRhs(u)) { // Overconsistent, g can be lowered to rhs
+                setG(u, getRhs(u));
+                for (int e = graph.getEdgeStart(u); e < graph.getEdgeEnd(u); e++)
+                    updateVertex(graph.getTarget(e));
+            } else { // Underconsistent, g is too low, reset it and let rhs propagate
+                setG(u, INFINITY);
+                updateVertex(u);
+                for (int e = graph.getEdgeStart(u); e < graph.getEdgeEnd(u); e++)
+                    updateVertex(graph.getTarget(e));
+            }
+        }
+    }
+
+    /**
+     * Recomputes rhs of a node from its neighbours and puts it in the queue if it is inconsistent
+     */
+    private void updateVertex(int u) {
+        if (u != goal) {
+            double best = INFINITY;
+            for (int e = graph.getEdgeStart(u); e < graph.getEdgeEnd(u); e++) {
+                double cost = cost(e) + getG(graph.getTarget(e));
+                if (cost < best)
+                    best = cost;
+            }
+            setRhs(u, best);
+        }
+        if (getG(u) != getRhs(u))
+            queue.update(u, key(u));
+        else
+            queue.remove(u);
+    }
+
+    @Override
+    public long getExpansions() {
+        return expansions + fallbackExpansions;
+    }
+
+    private double key(int node) {
+        return Math.min(getG(node), getRhs(node));
+    }
+
+    /**
+     * @return weight of the edge if its target is passable, INFINITY otherwise
+     */
+    private double cost(int edge) {
+        return isPassable(graph.getTarget(edge)) ? graph.getWeight(edge) : INFINITY;
+    }
+
+    private boolean isPassable(int node) {
+        return Main.isPassable(graph, visibility, node, pickedNumbers);
+    }
+
+    private double getG(int node) {
+        return stamps[node] == epoch ? g[node] : INFINITY;
+    }
+
+    private double getRhs(int node) {
+        return stamps[node] == epoch ? rhs[node] : INFINITY;
+    }
+
+    private void setG(int node, double value) {
+        stamp(node);
+        g[node] = value;
+    }
+
+    private void setRhs(int node, double value) {
+        stamp(node);
+        rhs[node] = value;
+    }
+
+    /**
+     * Initializes an untouched slot to INFINITY before it is written
+     */
+    private void stamp(int node) {
+        if (stamps[node] != epoch) {
+            stamps[node] = epoch;
+            g[node] = INFINITY;
+            rhs[node] = INFINITY;
+        }
+    }
+
+}
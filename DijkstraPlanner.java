@@ -0,0 +1,56 @@
+import java.util.ArrayList;
+
+/**
+ * Runs Main.dijkstra from scratch for every path, or through a SearchCache that reuses the trees of previous searches
+ */
+public class DijkstraPlanner implements Planner {
+    private final Graph graph; // Graph of the map
+    private final Node[][] nodes; // 2-D Node array that stores every node
+    private final VisibilityLayer visibility; // Revealed flags of the nodes, read by the searches
+    private final SearchContext context; // Working arrays shared by every search of this planner
+    private final SearchCache cache; // Cached trees the searches go through, null to search from scratch every time
+
+    private long cachedExpansions; // Nodes expanded by the searches of this planner that went through the cache
+
+
+    /**
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     */
+    DijkstraPlanner(Graph graph, Node[][] nodes, VisibilityLayer visibility) {
+        this(graph, nodes, visibility, null, 0);
+    }
+
+    /**
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     * @param cache Cached trees shared with the option evaluator, null to search from scratch every time
+     * @param heapArity Arity of the priority queue of the searches without cache, 0 for the order of MinHeap<Pair>
+     */
+    DijkstraPlanner(Graph graph, Node[][] nodes, VisibilityLayer visibility, SearchCache cache, int heapArity) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.visibility = visibility;
+        this.cache = cache;
+        this.context = cache == null ? new SearchContext(graph.getRowCount(), graph.getColumnCount(), heapArity) : null;
+    }
+
+
+    @Override
+    public double findPath(Node startingNode, Node endNode, ArrayList<Node> path, IntSet pickedNumbers) {
+        if (cache == null)
+            return Main.dijkstra(startingNode, endNode, graph, nodes, visibility, path, pickedNumbers, context);
+        long before = cache.getExpansions(); // No other search of the cache runs while the traveler plans
+        double distance = cache.findPath(startingNode, endNode, path, pickedNumbers);
+        cachedExpansions += cache.getExpansions() - before;
+        return distance;
+    }
+
+    @Override
+    public long getExpansions() {
+        return cache == null ? context.getExpansions() : cachedExpansions;
+    }
+
+}
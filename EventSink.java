@@ -0,0 +1,69 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Receives the events of the run in the order they happen, Main selects the encoding with --output-format=name
+ */
+public interface EventSink extends Closeable {
+
+    /**
+     * Traveler moved to the node (x, y)
+     */
+    void move(int x, int y) throws IOException;
+
+    /**
+     * A node revealed after the last move blocks the current path, a new path will be found
+     */
+    void impassable() throws IOException;
+
+    /**
+     * Number is chosen from wizard's offer
+     */
+    void numberChosen(int number) throws IOException;
+
+    /**
+     * Objective with the given 1-based order is reached
+     */
+    void objectiveReached(int objective) throws IOException;
+
+    /**
+     * Writes every buffered event to the file, used by checkpoints
+     * @return length of the file, a resumed run continues the file from there
+     */
+    long checkpoint() throws IOException;
+
+    /**
+     * @return name of the encoding, the one create takes: text, ndjson or binary
+     */
+    String getFormat();
+
+    /**
+     * @param format Name of the encoding: text, ndjson or binary
+     * @param file   File to write the events, it is truncated
+     * @return a new sink
+     */
+    static EventSink create(String format, File file) throws IOException {
+        return create(format, file, 0);
+    }
+
+    /**
+     * @param format       Name of the encoding: text, ndjson or binary
+     * @param file         File to write the events
+     * @param resumeLength Length of the file at the checkpoint a run resumes from, the rest is cut, 0 truncates the file
+     * @return a new sink
+     */
+    static EventSink create(String format, File file, long resumeLength) throws IOException {
+        switch (format) {
+            case "text":
+                return new TextEventSink(file, resumeLength);
+            case "ndjson":
+                return new NdjsonEventSink(file, resumeLength);
+            case "binary":
+                return new BinaryEventSink(file, resumeLength);
+            default:
+                throw new IllegalArgumentException("Unknown output format: " + format);
+        }
+    }
+
+}
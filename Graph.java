@@ -0,0 +1,68 @@
+/**
+ * Read-only view of the map as a graph, nodes are identified by their flat index x*columnCount+y
+ * Edges of a node are the edge indexes in [getEdgeStart(node), getEdgeEnd(node)), every edge is stored in both directions
+ */
+public interface Graph {
+
+    int getRowCount();
+
+    int getColumnCount();
+
+    /**
+     * @param node flat index of the node
+     * @return type of the node
+     */
+    int getType(int node);
+
+    /**
+     * @param node flat index of the node
+     * @return index of the first edge of the node
+     */
+    int getEdgeStart(int node);
+
+    /**
+     * @param node flat index of the node
+     * @return index after the last edge of the node
+     */
+    int getEdgeEnd(int node);
+
+    /**
+     * @param edge index of the edge
+     * @return flat index of the node the edge goes to
+     */
+    int getTarget(int edge);
+
+    /**
+     * @param edge index of the edge
+     * @return weight of the edge
+     */
+    double getWeight(int edge);
+
+    /**
+     * Minimum of weight / Manhattan length over every edge, which is the minimum edge weight on a 4-neighbour grid
+     * Manhattan distance times this value never overestimates a path cost, so it is an admissible heuristic
+     * @return the minimum weight per unit of Manhattan distance
+     */
+    double getMinWeightPerStep();
+
+    /**
+     * Computes the minimum of weight / Manhattan length over every edge of a graph
+     * @param graph Graph of the map
+     * @return the minimum weight per unit of Manhattan distance, 0 if the graph has no edge
+     */
+    static double computeMinWeightPerStep(Graph graph) {
+        int columnCount = graph.getColumnCount();
+        int nodeCount = graph.getRowCount() * columnCount;
+        double min = Double.POSITIVE_INFINITY;
+        for (int node = 0; node < nodeCount; node++) {
+            for (int e = graph.getEdgeStart(node); e < graph.getEdgeEnd(node); e++) {
+                int target = graph.getTarget(e);
+                int length = Math.abs(node / columnCount - target / columnCount) + Math.abs(node % columnCount - target % columnCount);
+                if (length > 0)
+                    min = Math.min(min, graph.getWeight(e) / length);
+            }
+        }
+        return min == Double.POSITIVE_INFINITY ? 0 : min;
+    }
+
+}
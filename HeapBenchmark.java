@@ -0,0 +1,121 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares MinHeap of Pairs with LazyMinHeap and IndexedMinHeap (arity 2, 4 and 8) as the priority queue of Dijkstra's algorithm
+ * Same random queries are answered with every queue on the same map, elapsed times are printed and distances are cross-checked
+ * Usage: java HeapBenchmark [nodeFile edgeFile [queryCount]]
+ */
+public class HeapBenchmark {
+    private static final int WARMUP_ROUNDS = 3; // Rounds that are run before measuring so that the JIT compiles the searches
+    private static final int MEASURED_ROUNDS = 5; // Rounds that are measured
+
+
+    public static void main(String[] args) throws IOException {
+        File nodeFile = new File(args.length > 1 ? args[0] : "nodes-500-500.txt"); // File that stores node information
+        File edgeFile = new File(args.length > 1 ? args[1] : "edges-500-500.txt"); // File that stores edge information
+        int queryCount = args.length > 2 ? Integer.parseInt(args[2]) : 50; // Number of {start, end} queries per round
+
+        Graph graph = MappedMapLoader.load(nodeFile, edgeFile, Runtime.getRuntime().availableProcessors());
+        VisibilityLayer visibility = new VisibilityLayer(graph.getRowCount(), graph.getColumnCount()); // Nothing is revealed in the benchmark
+        Node[][] nodes = Main.createNodes(graph, visibility, true); // MinHeap version walks the connections of the nodes
+        int rowCount = graph.getRowCount();
+        int columnCount = graph.getColumnCount();
+
+        // Pick random passable start and end nodes, seed is fixed so that every run answers the same queries
+        Random random = new Random(42);
+        Node[] starts = new Node[queryCount];
+        Node[] ends = new Node[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            starts[i] = randomPassableNode(nodes, random);
+            ends[i] = randomPassableNode(nodes, random);
+        }
+
+        double[] expected = new double[queryCount]; // Distances found with MinHeap, other queues must find the same ones
+        MinHeap<Pair> minHeap = new MinHeap<>(rowCount * columnCount + 1);
+        SearchContext context = new SearchContext(rowCount, columnCount);
+        long elapsed = measure(() -> {
+            for (int i = 0; i < queryCount; i++)
+                expected[i] = minHeapDijkstra(starts[i], ends[i], minHeap, context);
+        });
+        System.out.printf("MinHeap<Pair>          : %8.3f ms/query%n", elapsed / 1e6 / queryCount);
+
+        for (int arity : new int[]{0, 2, 4, 8}) { // 0 is the LazyMinHeap
+            SearchContext indexedContext = new SearchContext(rowCount, columnCount, arity);
+            double[] found = new double[queryCount];
+            elapsed = measure(() -> {
+                for (int i = 0; i < queryCount; i++)
+                    found[i] = Main.dijkstra(starts[i], ends[i], graph, nodes, visibility, new ArrayList<>(), type -> false, indexedContext);
+            });
+            for (int i = 0; i < queryCount; i++) {
+                if (found[i] != expected[i])
+                    throw new IllegalStateException("Distance mismatch for query " + i + ": " + found[i] + " != " + expected[i]);
+            }
+            if (arity == 0)
+                System.out.printf("LazyMinHeap            : %8.3f ms/query%n", elapsed / 1e6 / queryCount);
+            else
+                System.out.printf("IndexedMinHeap arity %d : %8.3f ms/query%n", arity, elapsed / 1e6 / queryCount);
+        }
+    }
+
+    /**
+     * Runs the rounds and returns the average elapsed time of a measured round
+     * @param round Work of one round
+     * @return average elapsed nanoseconds of the measured rounds
+     */
+    private static long measure(Runnable round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            round.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++)
+            round.run();
+        return (System.nanoTime() - start) / MEASURED_ROUNDS;
+    }
+
+    private static Node randomPassableNode(Node[][] nodes, Random random) {
+        while (true) {
+            Node node = nodes[random.nextInt(nodes.length)][random.nextInt(nodes[0].length)];
+            if (node.getType() != 1)
+                return node;
+        }
+    }
+
+    /**
+     * Dijkstra's algorithm as it was before IndexedMinHeap: a new Pair is inserted on every relaxation
+     * and stale pairs are skipped when they are extracted
+     * Nothing is revealed in the benchmark, so only type 1 nodes are impassable
+     */
+    private static double minHeapDijkstra(Node startingNode, Node endNode, MinHeap<Pair> pq, SearchContext context) {
+        context.reset();
+        pq.clear();
+        int startIndex = context.index(startingNode.getX(), startingNode.getY());
+        int endIndex = context.index(endNode.getX(), endNode.getY());
+        pq.insert(new Pair(startingNode, 0));
+        context.update(startIndex, 0, startIndex);
+        while (!pq.isEmpty()) {
+            Pair p = pq.deleteMin();
+            Node currentNode = p.getNode();
+            int currentIndex = context.index(currentNode.getX(), currentNode.getY());
+            if (context.isVisited(currentIndex)) // Stale pair
+                continue;
+            if (currentIndex == endIndex)
+                break;
+            context.markVisited(currentIndex);
+            for (Pair neighbour : currentNode.connections) {
+                Node neighbourNode = neighbour.getNode();
+                int neighbourIndex = context.index(neighbourNode.getX(), neighbourNode.getY());
+                if (neighbourNode.getType() == 1 || context.isVisited(neighbourIndex))
+                    continue;
+                double totalWeight = p.getWeight() + neighbour.getWeight();
+                if (totalWeight < context.getTotalWeight(neighbourIndex)) {
+                    context.update(neighbourIndex, totalWeight, currentIndex);
+                    pq.insert(new Pair(neighbourNode, totalWeight));
+                }
+            }
+        }
+        return context.getTotalWeight(endIndex);
+    }
+
+}
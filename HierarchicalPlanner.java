@@ -0,0 +1,432 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Hierarchical planner (HPA*) for large maps, it plans over a small abstract graph instead of every node of the grid
+ * The grid is split into clusterSize x clusterSize clusters, along the border of two clusters every run of node pairs that
+ * can be crossed gets an entrance (one in the middle, or one at each end of a long run)
+ * Entrance nodes are the nodes of the abstract graph, they are connected to the entrances of their own cluster with the
+ * distance of a search restricted to the cluster, and to the node across the border with the weight of that edge
+ * A plan connects the start and the end to the entrances of their clusters, runs A* on the abstract graph and then refines
+ * only the next segment at full resolution: the path inside the start cluster to the entrance the plan leaves it by,
+ * plus the step across the border, the simulation plans again from there
+ * Clusters are built on first use with the passability of that time, a node revealed as blocking invalidates only its
+ * cluster and the ones next to it, changed picked numbers invalidate every cluster
+ * Paths are close to the shortest ones but not always the shortest, if the abstract graph finds no way or start and end
+ * share a cluster, Main.dijkstra is run instead
+ */
+public class HierarchicalPlanner implements Planner {
+    static final int DEFAULT_CLUSTER_SIZE = 32;
+    private static final int LONG_RUN = 6; // Runs of crossable pairs at least this long get an entrance at both ends
+
+    private final Graph graph; // Graph of the map
+    private final Node[][] nodes; // 2-D Node array that stores every node
+    private final VisibilityLayer visibility; // Revealed flags of the nodes, read by the searches
+    private final int rowCount; // Row count of the grid
+    private final int columnCount; // Column count of the grid
+    private final int clusterSize; // Side of a cluster
+    private final int clusterColumns; // Number of clusters in a row of clusters
+    private final double heuristicScale; // Cost of one unit of Manhattan distance at least
+
+    private final Cluster[] clusters; // Built cluster of each cluster index, null if it is not built or invalidated
+    private final SearchContext context; // Abstract search, or Main.dijkstra when the plan falls back to it
+    private final LocalSearch startSearch; // Search from the start inside its cluster
+    private final LocalSearch endSearch; // Backward search from the end inside its cluster
+    private final LocalSearch buildSearch; // Searches between the entrances of a cluster that is built
+
+    private int[] builtPicked = new int[0]; // Picked numbers the clusters were built with
+    private IntSet pickedNumbers; // Picked numbers of the last plan, to tell if a revealed node blocks
+
+    private long expansions; // Nodes expanded by the local, abstract and fallback searches
+
+
+    /**
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     */
+    HierarchicalPlanner(Graph graph, Node[][] nodes, VisibilityLayer visibility) {
+        this(graph, nodes, visibility, DEFAULT_CLUSTER_SIZE);
+    }
+
+    /**
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     * @param clusterSize Side of a cluster in nodes
+     */
+    HierarchicalPlanner(Graph graph, Node[][] nodes, VisibilityLayer visibility, int clusterSize) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.visibility = visibility;
+        this.rowCount = graph.getRowCount();
+        this.columnCount = graph.getColumnCount();
+        this.clusterSize = clusterSize;
+        this.clusterColumns = (columnCount + clusterSize - 1) / clusterSize;
+        this.clusters = new Cluster[((rowCount + clusterSize - 1) / clusterSize) * clusterColumns];
+        this.context = new SearchContext(rowCount, columnCount);
+        this.startSearch = new LocalSearch();
+        this.endSearch = new LocalSearch();
+        this.buildSearch = new LocalSearch();
+        // Slightly lowered so that rounding of the multiplication can not make the heuristic overestimate a sum of weights
+        this.heuristicScale = graph.getMinWeightPerStep() * (1 - 1e-9);
+    }
+
+
+    @Override
+    public double findPath(Node startingNode, Node endNode, ArrayList<Node> path, IntSet pickedNumbers) {
+        if (endNode == null) // Early terminate condition
+            return 0;
+        this.pickedNumbers = pickedNumbers;
+        int[] picked = pickedNumbers.toArray();
+        if (!Arrays.equals(picked, builtPicked)) { // Passability of every special type may have changed
+            Arrays.fill(clusters, null);
+            builtPicked = picked;
+        }
+
+        int start = startingNode.getX() * columnCount + startingNode.getY(); // Flat index of the starting node
+        int end = endNode.getX() * columnCount + endNode.getY(); // Flat index of the end node
+        int startCluster = clusterOf(start);
+        int endCluster = clusterOf(end);
+        if (startCluster == endCluster) // Too close for the abstract graph
+            return fallback(startingNode, endNode, path, pickedNumbers);
+
+        searchCluster(startSearch, startCluster, start, false, pickedNumbers);
+        searchCluster(endSearch, endCluster, end, true, pickedNumbers);
+
+        // A* on the abstract graph, the start and the end are abstract nodes of this plan only
+        context.reset();
+        IndexedMinHeap pq = context.getPriorityQueue();
+        pq.insert(start, heuristic(start, end));
+        context.update(start, 0, start);
+        while (!pq.isEmpty()) {
+            int current = pq.deleteMin();
+            if (current == end)
+                break;
+            double currentWeight = context.getTotalWeight(current);
+            context.markVisited(current);
+            expansions++;
+            int clusterIndex = clusterOf(current);
+            Cluster cluster = cluster(clusterIndex, pickedNumbers);
+            int entrance = indexOf(cluster.nodes, cluster.nodes.length, current);
+            double[] costs = entrance >= 0 && current != start ? costs(cluster, clusterIndex, entrance, pickedNumbers) : null;
+            for (int j = 0; j < cluster.nodes.length; j++) { // Entrances of the same cluster
+                double cost = current == start ? startSearch.distance(cluster.nodes[j]) : costs != null ? costs[j] : Double.MAX_VALUE;
+                if (cost != Double.MAX_VALUE)
+                    relax(current, cluster.nodes[j], currentWeight + cost, end);
+            }
+            for (int r = 0; r < cluster.across.length; r++) { // Steps across the border
+                if (cluster.recordNodes[r] == entrance && entrance >= 0)
+                    relax(current, cluster.across[r], currentWeight + cluster.acrossWeights[r], end);
+            }
+            if (clusterIndex == endCluster && endSearch.distance(current) != Double.MAX_VALUE)
+                relax(current, end, currentWeight + endSearch.distance(current), end);
+        }
+        if (context.getTotalWeight(end) == Double.MAX_VALUE) // Entrances do not connect them, search the whole grid
+            return fallback(startingNode, endNode, path, pickedNumbers);
+
+        // Abstract nodes of the plan from the start, the segment ends at the first one outside the start cluster
+        ArrayList<Integer> plan = new ArrayList<>();
+        for (int current = end; current != start; current = context.getPreviousNode(current))
+            plan.add(current);
+        plan.add(start);
+        int k = plan.size() - 2;
+        while (clusterOf(plan.get(k)) == startCluster)
+            k--;
+        int across = plan.get(k); // First node of the next cluster
+        int exit = plan.get(k + 1); // Entrance the plan leaves the start cluster by
+
+        addNode(path, across);
+        for (int current = exit; current != start; current = startSearch.previous(current))
+            addNode(path, current);
+        return context.getTotalWeight(end);
+    }
+
+    /**
+     * Drops the clusters whose entrances or inner distances the revealed node can change
+     * @param node flat index of the node
+     */
+    @Override
+    public void nodeRevealed(int node) {
+        if (pickedNumbers != null && pickedNumbers.contains(graph.getType(node))) // Still passable
+            return;
+        int x = node / columnCount;
+        int y = node % columnCount;
+        int clusterRow = x / clusterSize;
+        int clusterColumn = y / clusterSize;
+        invalidate(clusterRow, clusterColumn);
+        // A node on a border can close an entrance, the cluster across keeps the other end of it
+        if (x % clusterSize == 0)
+            invalidate(clusterRow - 1, clusterColumn);
+        if (x % clusterSize == clusterSize - 1)
+            invalidate(clusterRow + 1, clusterColumn);
+        if (y % clusterSize == 0)
+            invalidate(clusterRow, clusterColumn - 1);
+        if (y % clusterSize == clusterSize - 1)
+            invalidate(clusterRow, clusterColumn + 1);
+    }
+
+    @Override
+    public long getExpansions() {
+        return expansions;
+    }
+
+
+    /**
+     * Runs Main.dijkstra on the whole grid, its path goes to the end
+     */
+    private double fallback(Node startingNode, Node endNode, ArrayList<Node> path, IntSet pickedNumbers) {
+        long before = context.getExpansions();
+        double distance = Main.dijkstra(startingNode, endNode, graph, nodes, visibility, path, pickedNumbers, context);
+        expansions += context.getExpansions() - before;
+        return distance;
+    }
+
+    /**
+     * Lowers the distance of an abstract node if the new one is shorter
+     */
+    private void relax(int from, int to, double totalWeight, int end) {
+        if (context.isVisited(to) || totalWeight >= context.getTotalWeight(to))
+            return;
+        context.update(to, totalWeight, from);
+        context.getPriorityQueue().insertOrDecrease(to, totalWeight + heuristic(to, end));
+    }
+
+    private double heuristic(int node, int end) {
+        return heuristicScale * (Math.abs(node / columnCount - end / columnCount) + Math.abs(node % columnCount - end % columnCount));
+    }
+
+    private int clusterOf(int node) {
+        return node / columnCount / clusterSize * clusterColumns + node % columnCount / clusterSize;
+    }
+
+    private void invalidate(int clusterRow, int clusterColumn) {
+        if (clusterRow >= 0 && clusterColumn >= 0 && clusterColumn < clusterColumns && clusterRow * clusterColumns < clusters.length)
+            clusters[clusterRow * clusterColumns + clusterColumn] = null;
+    }
+
+    private void addNode(ArrayList<Node> path, int node) {
+        path.add(nodes[node / columnCount][node % columnCount]);
+    }
+
+    private static int indexOf(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return built cluster, it is built now if it is not
+     */
+    private Cluster cluster(int clusterIndex, IntSet pickedNumbers) {
+        if (clusters[clusterIndex] == null)
+            clusters[clusterIndex] = buildCluster(clusterIndex, pickedNumbers);
+        return clusters[clusterIndex];
+    }
+
+    /**
+     * Finds the entrances on the four borders of the cluster, the distances between them are found when they are first needed
+     */
+    private Cluster buildCluster(int clusterIndex, IntSet pickedNumbers) {
+        int x0 = clusterIndex / clusterColumns * clusterSize;
+        int y0 = clusterIndex % clusterColumns * clusterSize;
+        int x1 = Math.min(x0 + clusterSize, rowCount);
+        int y1 = Math.min(y0 + clusterSize, columnCount);
+        Border border = new Border();
+        // Borders are scanned in increasing coordinate order, the cluster across finds the same runs from its side
+        if (x0 > 0)
+            border.scan(x0 * columnCount + y0, (x0 - 1) * columnCount + y0, 1, y1 - y0, pickedNumbers);
+        if (x1 < rowCount)
+            border.scan((x1 - 1) * columnCount + y0, x1 * columnCount + y0, 1, y1 - y0, pickedNumbers);
+        if (y0 > 0)
+            border.scan(x0 * columnCount + y0, x0 * columnCount + y0 - 1, columnCount, x1 - x0, pickedNumbers);
+        if (y1 < columnCount)
+            border.scan(x0 * columnCount + y1 - 1, x0 * columnCount + y1, columnCount, x1 - x0, pickedNumbers);
+
+        Cluster cluster = new Cluster();
+        int[] distinct = new int[border.count];
+        int distinctCount = 0;
+        cluster.recordNodes = new int[border.count];
+        for (int r = 0; r < border.count; r++) {
+            int index = indexOf(distinct, distinctCount, border.inside[r]);
+            if (index < 0) {
+                index = distinctCount;
+                distinct[distinctCount++] = border.inside[r];
+            }
+            cluster.recordNodes[r] = index;
+        }
+        cluster.nodes = Arrays.copyOf(distinct, distinctCount);
+        cluster.across = Arrays.copyOf(border.outside, border.count);
+        cluster.acrossWeights = Arrays.copyOf(border.weights, border.count);
+        cluster.costs = new double[distinctCount][];
+        return cluster;
+    }
+
+    /**
+     * @return distances from an entrance to every entrance of its cluster, searched inside the cluster on first use
+     */
+    private double[] costs(Cluster cluster, int clusterIndex, int entrance, IntSet pickedNumbers) {
+        if (cluster.costs[entrance] == null) {
+            searchCluster(buildSearch, clusterIndex, cluster.nodes[entrance], false, pickedNumbers);
+            double[] costs = new double[cluster.nodes.length];
+            for (int j = 0; j < costs.length; j++)
+                costs[j] = buildSearch.distance(cluster.nodes[j]);
+            cluster.costs[entrance] = costs;
+        }
+        return cluster.costs[entrance];
+    }
+
+    /**
+     * Runs Dijkstra from the source over the nodes of the cluster only
+     * Forward, the distance of a node is the cost from the source to it, entered nodes must be passable
+     * Backward, the distance of a node is the cost from it to the source, the node left by each step must be passable,
+     * edges are stored in both directions with the same weight
+     */
+    private void searchCluster(LocalSearch search, int clusterIndex, int source, boolean isBackward, IntSet pickedNumbers) {
+        search.x0 = clusterIndex / clusterColumns * clusterSize;
+        search.y0 = clusterIndex % clusterColumns * clusterSize;
+        int x1 = Math.min(search.x0 + clusterSize, rowCount);
+        int y1 = Math.min(search.y0 + clusterSize, columnCount);
+        SearchContext local = search.context;
+        local.reset();
+        IndexedMinHeap pq = local.getPriorityQueue();
+        int sourceIndex = search.local(source);
+        pq.insert(sourceIndex, 0);
+        local.update(sourceIndex, 0, sourceIndex);
+        while (!pq.isEmpty()) {
+            int current = pq.deleteMin();
+            double currentWeight = local.getTotalWeight(current);
+            local.markVisited(current);
+            expansions++;
+            int node = search.global(current);
+            if (isBackward && !Main.isPassable(graph, visibility, node, pickedNumbers))
+                continue; // No step can enter it, its own distance is still valid for a path that starts on it
+            int edgeEnd = graph.getEdgeEnd(node);
+            for (int e = graph.getEdgeStart(node); e < edgeEnd; e++) {
+                int neighbour = graph.getTarget(e);
+                int x = neighbour / columnCount;
+                int y = neighbour % columnCount;
+                if (x < search.x0 || x >= x1 || y < search.y0 || y >= y1)
+                    continue;
+                int neighbourIndex = search.local(neighbour);
+                if (local.isVisited(neighbourIndex) || (!isBackward && !Main.isPassable(graph, visibility, neighbour, pickedNumbers)))
+                    continue;
+                double totalWeight = currentWeight + graph.getWeight(e);
+                if (totalWeight < local.getTotalWeight(neighbourIndex)) {
+                    local.update(neighbourIndex, totalWeight, current);
+                    pq.insertOrDecrease(neighbourIndex, totalWeight);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Search inside one cluster, nodes are indexed relative to the corner of the cluster
+     */
+    private final class LocalSearch {
+        final SearchContext context = new SearchContext(clusterSize, clusterSize);
+        int x0; // Row of the corner of the searched cluster
+        int y0; // Column of the corner of the searched cluster
+
+        int local(int node) {
+            return (node / columnCount - x0) * clusterSize + node % columnCount - y0;
+        }
+
+        int global(int index) {
+            return (x0 + index / clusterSize) * columnCount + y0 + index % clusterSize;
+        }
+
+        /**
+         * @param node flat index of a node of the searched cluster
+         * @return distance found by the last search, Double.MAX_VALUE if it is not reached
+         */
+        double distance(int node) {
+            return context.getTotalWeight(local(node));
+        }
+
+        /**
+         * @param node flat index of a node reached by the last search
+         * @return flat index of the node before it on the path from the source
+         */
+        int previous(int node) {
+            return global(context.getPreviousNode(local(node)));
+        }
+    }
+
+    /**
+     * Entrances found on the borders of a cluster, each one is a node inside and the node across with the weight between them
+     */
+    private final class Border {
+        int[] inside = new int[8];
+        int[] outside = new int[8];
+        double[] weights = new double[8];
+        int count;
+
+        /**
+         * Finds the runs of crossable pairs along one border and adds their entrances
+         * @param inside  flat index of the first node inside the cluster
+         * @param outside flat index of the node across from it
+         * @param step    Difference of the flat indexes of two consecutive nodes along the border
+         * @param length  Number of nodes along the border
+         */
+        void scan(int inside, int outside, int step, int length, IntSet pickedNumbers) {
+            int runStart = -1; // Position of the first pair of the current run, -1 if there is no run
+            for (int i = 0; i <= length; i++) {
+                boolean isOpen = i < length && weight(inside + i * step, outside + i * step, pickedNumbers) != Double.MAX_VALUE;
+                if (isOpen && runStart < 0)
+                    runStart = i;
+                if (isOpen || runStart < 0)
+                    continue;
+                int runEnd = i - 1;
+                if (runEnd - runStart + 1 >= LONG_RUN) {
+                    add(inside + runStart * step, outside + runStart * step, pickedNumbers);
+                    add(inside + runEnd * step, outside + runEnd * step, pickedNumbers);
+                } else {
+                    int middle = (runStart + runEnd) / 2;
+                    add(inside + middle * step, outside + middle * step, pickedNumbers);
+                }
+                runStart = -1;
+            }
+        }
+
+        private void add(int inside, int outside, IntSet pickedNumbers) {
+            if (count == this.inside.length) {
+                this.inside = Arrays.copyOf(this.inside, 2 * count);
+                this.outside = Arrays.copyOf(this.outside, 2 * count);
+                weights = Arrays.copyOf(weights, 2 * count);
+            }
+            this.inside[count] = inside;
+            this.outside[count] = outside;
+            weights[count] = weight(inside, outside, pickedNumbers);
+            count++;
+        }
+
+        /**
+         * @return weight of the edge between the nodes if both can be entered, Double.MAX_VALUE otherwise
+         */
+        private double weight(int from, int to, IntSet pickedNumbers) {
+            if (!Main.isPassable(graph, visibility, from, pickedNumbers) || !Main.isPassable(graph, visibility, to, pickedNumbers))
+                return Double.MAX_VALUE;
+            for (int e = graph.getEdgeStart(from); e < graph.getEdgeEnd(from); e++) {
+                if (graph.getTarget(e) == to)
+                    return graph.getWeight(e);
+            }
+            return Double.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Abstract graph of one cluster
+     */
+    private static final class Cluster {
+        int[] nodes; // Distinct entrance nodes inside the cluster
+        double[][] costs; // costs[i][j] is the distance from nodes[i] to nodes[j] inside the cluster, Double.MAX_VALUE if there is no way, rows are null until searched
+        int[] recordNodes; // Index in nodes of the inside node of each crossing
+        int[] across; // Node across the border of each crossing
+        double[] acrossWeights; // Weight of the edge of each crossing
+    }
+
+}
@@ -0,0 +1,208 @@
+import java.util.Arrays;
+
+/**
+ * Min heap of int ids ordered by double keys, used as the priority queue of Dijkstra's algorithm
+ * Unlike MinHeap, no object is created per element and every id is stored at most once:
+ * the position of each id inside the heap is kept, so its key can be decreased in place instead of inserting a duplicate
+ * Each index has arity many children (2, 4 or 8), wider heaps are shallower and their children share cache lines
+ */
+public class IndexedMinHeap {
+    private final int arity; // Children count of every index
+
+    private final int[] heap; // Ids in heap order, heap[0] is the minimum
+    private final double[] keys; // Key of each id
+    private final int[] positions; // Index of each id inside heap, -1 if id is not in the heap
+
+    private int size;
+
+
+    /**
+     * @param capacity Number of distinct ids, ids are in [0, capacity)
+     * @param arity    Children count of every index (2, 4 or 8)
+     */
+    IndexedMinHeap(int capacity, int arity) {
+        if (arity != 2 && arity != 4 && arity != 8)
+            throw new IllegalArgumentException("Arity must be 2, 4 or 8");
+        this.arity = arity;
+        heap = new int[capacity];
+        keys = new double[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1); // Initially, heap is empty
+        size = 0;
+    }
+
+
+    /**
+     * Inserts the id with the given key
+     * @param id  Id to be inserted, must not be in the heap
+     * @param key Key of the id
+     */
+    public void insert(int id, double key) {
+        keys[id] = key;
+        percolateUp(size++, id);
+    }
+
+    /**
+     * Decreases the key of an id that is already in the heap and moves it up to its true position
+     * @param id  Id whose key will be decreased
+     * @param key New key, must not be greater than the current key
+     */
+    public void decreaseKey(int id, double key) {
+        keys[id] = key;
+        percolateUp(positions[id], id);
+    }
+
+    /**
+     * Inserts the id if it is not in the heap, decreases its key otherwise
+     * @param id  Id to be inserted or updated
+     * @param key New key of the id
+     */
+    public void insertOrDecrease(int id, double key) {
+        if (positions[id] == -1)
+            insert(id, key);
+        else
+            decreaseKey(id, key);
+    }
+
+    /**
+     * Sets the key of an id, the id is inserted if it is not in the heap, moved up or down otherwise
+     * @param id  Id to be inserted or updated
+     * @param key New key of the id
+     */
+    public void update(int id, double key) {
+        int hole = positions[id];
+        if (hole == -1) {
+            insert(id, key);
+        } else if (key <= keys[id]) {
+            decreaseKey(id, key);
+        } else {
+            keys[id] = key;
+            percolateDown(hole, id);
+        }
+    }
+
+    /**
+     * Removes an id from the heap, the last id fills its place and is moved up or down
+     * @param id Id to be removed, nothing happens if it is not in the heap
+     */
+    public void remove(int id) {
+        int hole = positions[id];
+        if (hole == -1)
+            return;
+        positions[id] = -1;
+        int lastId = heap[--size];
+        if (hole == size) // Removed id was the last one
+            return;
+        if (hole > 0 && keys[lastId] < keys[heap[(hole - 1) / arity]])
+            percolateUp(hole, lastId);
+        else
+            percolateDown(hole, lastId);
+    }
+
+    /**
+     * @return the id with the minimum key without removing it, -1 if heap is empty
+     */
+    public int peekMin() {
+        return size == 0 ? -1 : heap[0];
+    }
+
+    /**
+     * @return the minimum key, Double.POSITIVE_INFINITY if heap is empty
+     */
+    public double getMinKey() {
+        return size == 0 ? Double.POSITIVE_INFINITY : keys[heap[0]];
+    }
+
+    /**
+     * Deletes the id with the minimum key and percolates down the last id from the root to secure heap property
+     * @return the deleted id, -1 if heap is empty
+     */
+    public int deleteMin() {
+        if (size == 0)
+            return -1;
+        int minId = heap[0];
+        positions[minId] = -1;
+        int lastId = heap[--size];
+        if (size > 0)
+            percolateDown(0, lastId);
+        return minId;
+    }
+
+    /**
+     * Given a hole and an id, moves the hole up while the parent has a bigger key, then places the id there
+     * @param hole Index that is logically empty
+     * @param id   Id we want to find true position of
+     */
+    private void percolateUp(int hole, int id) {
+        double key = keys[id];
+        while (hole > 0) {
+            int parent = (hole - 1) / arity;
+            int parentId = heap[parent];
+            if (keys[parentId] <= key) // Parent is not bigger, we found the position
+                break;
+            heap[hole] = parentId; // Move parent down
+            positions[parentId] = hole;
+            hole = parent;
+        }
+        heap[hole] = id;
+        positions[id] = hole;
+    }
+
+    /**
+     * Given a hole and an id, moves the hole down while the smallest child has a smaller key, then places the id there
+     * @param hole Index that is logically empty
+     * @param id   Id we want to find true position of
+     */
+    private void percolateDown(int hole, int id) {
+        double key = keys[id];
+        while (true) {
+            int firstChild = hole * arity + 1;
+            if (firstChild >= size) // Hole has no child
+                break;
+            int lastChild = Math.min(firstChild + arity, size); // Exclusive
+            int childIndex = firstChild; // Index of the smallest child
+            double childKey = keys[heap[firstChild]];
+            for (int c = firstChild + 1; c < lastChild; c++) {
+                double k = keys[heap[c]];
+                if (k < childKey) {
+                    childKey = k;
+                    childIndex = c;
+                }
+            }
+            if (childKey >= key) // Smallest child is not smaller, we found the position
+                break;
+            int childId = heap[childIndex];
+            heap[hole] = childId; // Move smallest child up
+            positions[childId] = hole;
+            hole = childIndex;
+        }
+        heap[hole] = id;
+        positions[id] = hole;
+    }
+
+    /**
+     * Removes every id in O(size) so that the heap can be reused without allocating new arrays
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            positions[heap[i]] = -1;
+        size = 0;
+    }
+
+    public boolean contains(int id) {
+        return positions[id] != -1;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+}
@@ -0,0 +1,197 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Set of primitive ints, used instead of MyHashSet<Integer> so that no Integer is boxed and no list is walked on a lookup
+ * Values in [0, BITMAP_LIMIT) (every type id of the map in practice) are kept in a bitmap and tested with one shift,
+ * other values are kept in an open addressing table with linear probing and a power of two capacity
+ * It is also an IntPredicate, so a set can be handed to the searches as the test of passable types without a wrapper
+ */
+public class IntSet implements IntPredicate {
+    private static final int BITMAP_LIMIT = 1024; // Values in [0, BITMAP_LIMIT) are kept in the bitmap
+    private static final int INITIAL_CAPACITY = 16; // Initial capacity of the table, always a power of two
+    private static final int EMPTY = Integer.MIN_VALUE; // Marks free slots of the table
+
+    private final long[] bitmap = new long[BITMAP_LIMIT >>> 6]; // Bit v is set if small value v is in the set
+
+    private int[] table; // Slots of the other values, EMPTY if free
+    private int tableSize; // Number of values in the table
+    private boolean containsEmpty; // EMPTY itself can not be stored in the table, it is kept here
+
+    private int size; // Number of values in the set
+
+
+    /**
+     * No-arg constructor
+     */
+    IntSet() {
+        table = new int[INITIAL_CAPACITY];
+        Arrays.fill(table, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * @param other Set whose values are copied, it is not modified
+     */
+    IntSet(IntSet other) {
+        System.arraycopy(other.bitmap, 0, bitmap, 0, bitmap.length);
+        table = other.table.clone();
+        tableSize = other.tableSize;
+        containsEmpty = other.containsEmpty;
+        size = other.size;
+    }
+
+
+    /**
+     * @param value Insert the value into the set if it is not already in the set
+     * @return True if the value was not in the set
+     */
+    public boolean insert(int value) {
+        if (value >= 0 && value < BITMAP_LIMIT) {
+            long word = bitmap[value >>> 6];
+            bitmap[value >>> 6] = word | (1L << value);
+            if ((word & (1L << value)) != 0)
+                return false;
+        } else if (value == EMPTY) {
+            if (containsEmpty)
+                return false;
+            containsEmpty = true;
+        } else {
+            if (2 * (tableSize + 1) > table.length) // Keep the load factor at most 0.5 so that probe sequences stay short
+                rehash(2 * table.length);
+            int slot = findSlot(table, value);
+            if (table[slot] == value)
+                return false;
+            table[slot] = value;
+            tableSize++;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Checks if the set contains the value
+     * @param value value to be checked
+     * @return True if the set contains the value, false otherwise
+     */
+    public boolean contains(int value) {
+        if (value >= 0 && value < BITMAP_LIMIT)
+            return (bitmap[value >>> 6] & (1L << value)) != 0;
+        if (value == EMPTY)
+            return containsEmpty;
+        return table[findSlot(table, value)] == value;
+    }
+
+    @Override
+    public boolean test(int value) {
+        return contains(value);
+    }
+
+    /**
+     * @param value Remove the value from the set if it is in the set
+     * @return True if removal is successful
+     */
+    public boolean remove(int value) {
+        if (value >= 0 && value < BITMAP_LIMIT) {
+            long word = bitmap[value >>> 6];
+            if ((word & (1L << value)) == 0)
+                return false;
+            bitmap[value >>> 6] = word & ~(1L << value);
+        } else if (value == EMPTY) {
+            if (!containsEmpty)
+                return false;
+            containsEmpty = false;
+        } else {
+            int slot = findSlot(table, value);
+            if (table[slot] != value)
+                return false;
+            table[slot] = EMPTY;
+            tableSize--;
+            // Values after the removed one may have probed past it, move them back so that lookups still find them
+            int mask = table.length - 1;
+            for (int next = (slot + 1) & mask; table[next] != EMPTY; next = (next + 1) & mask) {
+                int moved = table[next];
+                table[next] = EMPTY;
+                table[findSlot(table, moved)] = moved;
+            }
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes every value
+     */
+    public void clear() {
+        Arrays.fill(bitmap, 0);
+        Arrays.fill(table, EMPTY);
+        tableSize = 0;
+        containsEmpty = false;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return every value of the set in ascending order, two sets are equal if their arrays are equal
+     */
+    public int[] toArray() {
+        int[] values = new int[size];
+        int count = 0;
+        if (containsEmpty)
+            values[count++] = EMPTY; // Smallest int, it comes first
+        for (int value : table) {
+            if (value != EMPTY)
+                values[count++] = value;
+        }
+        for (int w = 0; w < bitmap.length; w++) {
+            for (long word = bitmap[w]; word != 0; word &= word - 1)
+                values[count++] = (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    /**
+     * Finds the slot of the value, or the free slot where the probe sequence of the value ends
+     * @param table Table to search, it must have at least one free slot
+     * @param value Value to be searched
+     * @return index of the slot
+     */
+    private static int findSlot(int[] table, int value) {
+        int mask = table.length - 1;
+        int slot = mix(value) & mask;
+        while (table[slot] != EMPTY && table[slot] != value)
+            slot = (slot + 1) & mask; // Linear probing, the next slot is usually in the same cache line
+        return slot;
+    }
+
+    /**
+     * Spreads the bits of the value so that consecutive values do not fill consecutive slots
+     */
+    private static int mix(int value) {
+        int h = value * 0x9E3779B9; // Fibonacci hashing
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Moves every value of the table to a new table of the given capacity
+     * @param capacity Capacity of the new table, a power of two
+     */
+    private void rehash(int capacity) {
+        int[] oldTable = table;
+        table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        for (int value : oldTable) {
+            if (value != EMPTY)
+                table[findSlot(table, value)] = value;
+        }
+    }
+
+}
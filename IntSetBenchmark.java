@@ -0,0 +1,82 @@
+import java.util.Random;
+
+/**
+ * Compares MyHashSet<Integer> with IntSet on the lookups Dijkstra and revealNodes make on the picked numbers
+ * Small values are type ids (bitmap of IntSet), large values are spread over the int range (open addressing table of IntSet)
+ * Usage: java IntSetBenchmark [lookupCount]
+ */
+public class IntSetBenchmark {
+    private static final int WARMUP_ROUNDS = 3; // Rounds that are run before measuring so that the JIT compiles the lookups
+    private static final int MEASURED_ROUNDS = 5; // Rounds that are measured
+
+
+    public static void main(String[] args) {
+        int lookupCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000; // Number of lookups per round
+        Random random = new Random(42);
+
+        // Type ids: a few of 2..9 are picked, lookups are types of special nodes
+        int[] smallValues = new int[lookupCount];
+        for (int i = 0; i < lookupCount; i++)
+            smallValues[i] = 2 + random.nextInt(8);
+        compare("type ids", new int[]{3, 5, 8}, smallValues);
+
+        // Arbitrary ints: half of the lookups hit
+        int[] inserted = new int[1000];
+        for (int i = 0; i < inserted.length; i++)
+            inserted[i] = random.nextInt();
+        int[] largeValues = new int[lookupCount];
+        for (int i = 0; i < lookupCount; i++)
+            largeValues[i] = random.nextBoolean() ? inserted[random.nextInt(inserted.length)] : random.nextInt();
+        compare("large ints", inserted, largeValues);
+    }
+
+    /**
+     * Fills both sets with the same values, measures the lookups and checks both sets give the same answers
+     * @param values  Values inserted into the sets
+     * @param lookups Values looked up in every round
+     */
+    private static void compare(String name, int[] values, int[] lookups) {
+        MyHashSet<Integer> myHashSet = new MyHashSet<>();
+        IntSet intSet = new IntSet();
+        for (int value : values) {
+            myHashSet.insert(value);
+            intSet.insert(value);
+        }
+        int[] hits = new int[2];
+        long myHashSetTime = measure(() -> {
+            int count = 0;
+            for (int value : lookups) {
+                if (myHashSet.contains(value))
+                    count++;
+            }
+            hits[0] = count;
+        });
+        long intSetTime = measure(() -> {
+            int count = 0;
+            for (int value : lookups) {
+                if (intSet.contains(value))
+                    count++;
+            }
+            hits[1] = count;
+        });
+        if (hits[0] != hits[1])
+            throw new IllegalStateException("Hit count mismatch for " + name + ": " + hits[0] + " != " + hits[1]);
+        System.out.printf("%-10s: MyHashSet<Integer> %6.2f ns/lookup, IntSet %6.2f ns/lookup%n",
+                name, (double) myHashSetTime / lookups.length, (double) intSetTime / lookups.length);
+    }
+
+    /**
+     * Runs the rounds and returns the average elapsed time of a measured round
+     * @param round Work of one round
+     * @return average elapsed nanoseconds of the measured rounds
+     */
+    private static long measure(Runnable round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++)
+            round.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++)
+            round.run();
+        return (System.nanoTime() - start) / MEASURED_ROUNDS;
+    }
+
+}
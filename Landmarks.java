@@ -0,0 +1,330 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Landmark (ALT) lower bounds of the distances of the map
+ * For each of k landmarks the distance to every node is computed once on the optimistic graph, where every node that is
+ * not type 1 is passable, by the triangle inequality |d(l, t) - d(l, v)| is then a lower bound of the distance from v to t
+ * Reveals and picked numbers only make nodes impassable, which can only make distances longer, so the bounds stay valid
+ * for every search of every traveler, and they are usually much tighter than the Manhattan distance
+ * Distances are kept in one float[] indexed by node*k + landmark, so the k distances of a node share a cache line
+ * Landmarks are spread evenly along the border of the grid, their searches run in parallel
+ * File layout (little endian):
+ * header    : magic, version, rowCount, columnCount, landmarkCount, unused (ints), fingerprint of the map (long) = 32 bytes
+ * landmarks : landmarkCount ints, padded to a multiple of 8 bytes
+ * distances : nodeCount*landmarkCount floats
+ */
+public class Landmarks {
+    private static final int MAGIC = 0x4D474C4D; // "MGLM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int CHUNK_SIZE = 1 << 20; // Bytes read or written at a time
+    private static final double SLACK = 0x1p-23; // Relative error a distance may have after it is rounded to a float, twice over
+
+    private final int landmarkCount; // Number of landmarks
+    private final int[] landmarkNodes; // Flat index of each landmark
+    private final float[] distances; // distances[node*landmarkCount + l] is the distance from landmark l to node, infinity if unreachable
+
+
+    /**
+     * @param landmarkNodes Flat index of each landmark
+     * @param distances     Distances of every node to every landmark, indexed by node*landmarkCount + l
+     */
+    private Landmarks(int[] landmarkNodes, float[] distances) {
+        this.landmarkCount = landmarkNodes.length;
+        this.landmarkNodes = landmarkNodes;
+        this.distances = distances;
+    }
+
+
+    /**
+     * Reads the landmark file if it was computed for this map with this many landmarks, otherwise computes the landmarks
+     * and writes the file, so the preprocessing is done once per map
+     * @param graph         Graph of the map
+     * @param file          Landmark file, usually next to the map
+     * @param landmarkCount Number of landmarks
+     * @param threadCount   Number of landmark searches that can run at the same time
+     * @return landmarks of the map
+     * @throws IOException if the file can not be written
+     */
+    public static Landmarks loadOrCompute(Graph graph, File file, int landmarkCount, int threadCount) throws IOException {
+        long fingerprint = fingerprint(graph);
+        if (file.isFile()) {
+            Landmarks landmarks = read(file, graph, fingerprint);
+            if (landmarks != null && landmarks.landmarkCount == landmarkCount)
+                return landmarks;
+        }
+        Landmarks landmarks = compute(graph, landmarkCount, threadCount);
+        landmarks.write(file, graph, fingerprint);
+        return landmarks;
+    }
+
+    /**
+     * Picks the landmarks and runs one Dijkstra search on the optimistic graph from each of them
+     * @param graph         Graph of the map
+     * @param landmarkCount Number of landmarks
+     * @param threadCount   Number of searches that can run at the same time
+     * @return landmarks of the map
+     */
+    public static Landmarks compute(Graph graph, int landmarkCount, int threadCount) {
+        long distanceCount = (long) graph.getRowCount() * graph.getColumnCount() * landmarkCount; // Same limit as read
+        if (landmarkCount <= 0 || distanceCount > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(landmarkCount + " landmarks of a " + graph.getRowCount() + "x" + graph.getColumnCount()
+                    + " map do not fit in one array");
+        int[] landmarkNodes = pickLandmarks(graph, landmarkCount);
+        float[] distances = new float[(int) distanceCount];
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, landmarkCount)));
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<>();
+            for (int l = 0; l < landmarkCount; l++) {
+                int landmark = l;
+                futures.add(executor.submit(() -> search(graph, landmarkNodes[landmark], landmark, landmarkCount, distances)));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Landmark search failed", e);
+        } finally {
+            executor.shutdown();
+        }
+        return new Landmarks(landmarkNodes, distances);
+    }
+
+    /**
+     * @param node flat index of the target node of a search
+     * @return distances of the node to every landmark, given to lowerBound for every node of the search
+     */
+    public double[] getDistances(int node) {
+        double[] row = new double[landmarkCount];
+        for (int l = 0; l < landmarkCount; l++)
+            row[l] = distances[node * landmarkCount + l];
+        return row;
+    }
+
+    /**
+     * @param node            flat index of the node
+     * @param targetDistances Distances of the target to every landmark, from getDistances
+     * @return lower bound of the distance from the node to the target, or from the target to the node
+     */
+    public double lowerBound(int node, double[] targetDistances) {
+        double bound = 0;
+        int base = node * landmarkCount;
+        for (int l = 0; l < landmarkCount; l++) {
+            double distance = distances[base + l];
+            double target = targetDistances[l];
+            if (distance == Double.POSITIVE_INFINITY || target == Double.POSITIVE_INFINITY)
+                continue; // Landmark does not reach one of them, it tells nothing
+            // Lowered by the rounding error of both floats, so that the bound never exceeds the exact difference
+            bound = Math.max(bound, Math.abs(target - distance) - SLACK * (target + distance));
+        }
+        return bound;
+    }
+
+    public int getLandmarkCount() {
+        return landmarkCount;
+    }
+
+    /**
+     * @return flat index of each landmark
+     */
+    public int[] getLandmarkNodes() {
+        return landmarkNodes.clone();
+    }
+
+
+    /**
+     * Spreads the landmarks evenly along the border of the grid, starting from the corner (0, 0), each one is moved to the
+     * closest node that is not type 1 and has an edge
+     */
+    private static int[] pickLandmarks(Graph graph, int landmarkCount) {
+        int rowCount = graph.getRowCount();
+        int columnCount = graph.getColumnCount();
+        int perimeter = Math.max(1, 2 * (rowCount + columnCount) - 4); // Cells on the border of the grid
+        int[] landmarkNodes = new int[landmarkCount];
+        for (int l = 0; l < landmarkCount; l++) {
+            int position = (int) ((long) perimeter * l / landmarkCount); // Walks the border clockwise
+            int x, y;
+            if (position < columnCount) { // Row 0
+                x = 0;
+                y = position;
+            } else if (position < columnCount + rowCount - 1) { // Last column
+                x = position - columnCount + 1;
+                y = columnCount - 1;
+            } else if (position < 2 * columnCount + rowCount - 2) { // Last row, backwards
+                x = rowCount - 1;
+                y = columnCount - 1 - (position - columnCount - rowCount + 2);
+            } else { // Column 0, backwards
+                x = rowCount - 1 - (position - 2 * columnCount - rowCount + 3);
+                y = 0;
+            }
+            landmarkNodes[l] = closestOpenNode(graph, Math.max(0, Math.min(x, rowCount - 1)), Math.max(0, Math.min(y, columnCount - 1)));
+        }
+        return landmarkNodes;
+    }
+
+    /**
+     * @return flat index of the closest node in Manhattan distance that is not type 1 and has an edge
+     */
+    private static int closestOpenNode(Graph graph, int x, int y) {
+        int rowCount = graph.getRowCount();
+        int columnCount = graph.getColumnCount();
+        for (int d = 0; d < rowCount + columnCount; d++) { // Rings of growing Manhattan distance
+            for (int dx = -d; dx <= d; dx++) {
+                int i = x + dx;
+                if (i < 0 || i >= rowCount)
+                    continue;
+                for (int j : new int[]{y - (d - Math.abs(dx)), y + (d - Math.abs(dx))}) {
+                    int node = i * columnCount + j;
+                    if (j >= 0 && j < columnCount && graph.getType(node) != 1 && graph.getEdgeEnd(node) > graph.getEdgeStart(node))
+                        return node;
+                }
+            }
+        }
+        return x * columnCount + y; // Every node is blocked, the landmark reaches nothing
+    }
+
+    /**
+     * Dijkstra from the landmark over every node that is not type 1, distances are written to the landmark's slots
+     */
+    private static void search(Graph graph, int landmarkNode, int landmark, int landmarkCount, float[] distances) {
+        int nodeCount = graph.getRowCount() * graph.getColumnCount();
+        SearchContext context = new SearchContext(graph.getRowCount(), graph.getColumnCount());
+        context.reset();
+        IndexedMinHeap pq = context.getPriorityQueue();
+        pq.insert(landmarkNode, 0);
+        context.update(landmarkNode, 0, landmarkNode);
+        while (!pq.isEmpty()) {
+            int current = pq.deleteMin();
+            double currentWeight = context.getTotalWeight(current);
+            context.markVisited(current);
+            int edgeEnd = graph.getEdgeEnd(current);
+            for (int e = graph.getEdgeStart(current); e < edgeEnd; e++) {
+                int neighbour = graph.getTarget(e);
+                if (context.isVisited(neighbour) || graph.getType(neighbour) == 1)
+                    continue;
+                double totalWeight = currentWeight + graph.getWeight(e);
+                if (totalWeight < context.getTotalWeight(neighbour)) {
+                    context.update(neighbour, totalWeight, current);
+                    pq.insertOrDecrease(neighbour, totalWeight);
+                }
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) // Nodes the landmark does not reach are infinitely far
+            distances[node * landmarkCount + landmark] = context.isVisited(node) ? (float) context.getTotalWeight(node) : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * CRC32 of everything the distances depend on: size, type 1 nodes, edges and weights
+     */
+    static long fingerprint(Graph graph) {
+        int nodeCount = graph.getRowCount() * graph.getColumnCount();
+        CRC32 checksum = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(graph.getRowCount()).putInt(graph.getColumnCount());
+        for (int node = 0; node < nodeCount; node++) {
+            if (buffer.remaining() < 16) {
+                buffer.flip();
+                checksum.update(buffer);
+                buffer.clear();
+            }
+            buffer.put((byte) (graph.getType(node) == 1 ? 1 : 0));
+            int edgeEnd = graph.getEdgeEnd(node);
+            for (int e = graph.getEdgeStart(node); e < edgeEnd; e++) {
+                if (buffer.remaining() < 12) {
+                    buffer.flip();
+                    checksum.update(buffer);
+                    buffer.clear();
+                }
+                buffer.putInt(graph.getTarget(e)).putDouble(graph.getWeight(e));
+            }
+        }
+        buffer.flip();
+        checksum.update(buffer);
+        return checksum.getValue();
+    }
+
+    /**
+     * Writes the landmarks in the landmark file format
+     */
+    private void write(File file, Graph graph, long fingerprint) throws IOException {
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(0);
+            FileChannel channel = output.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(graph.getRowCount()).putInt(graph.getColumnCount());
+            buffer.putInt(landmarkCount).putInt(0).putLong(fingerprint);
+            for (int landmarkNode : landmarkNodes)
+                buffer.putInt(landmarkNode);
+            if (landmarkCount % 2 == 1) // Distances start at a multiple of 8 bytes
+                buffer.putInt(0);
+            for (float distance : distances) {
+                if (!buffer.hasRemaining())
+                    flush(buffer, channel);
+                buffer.putFloat(distance);
+            }
+            flush(buffer, channel);
+        }
+    }
+
+    /**
+     * @return landmarks of the file, null if the file is not a landmark file of this map
+     */
+    private static Landmarks read(File file, Graph graph, long fingerprint) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            if (channel.size() < HEADER_SIZE)
+                return null;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            BinaryMap.readFully(channel, header, 0);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != graph.getRowCount()
+                    || header.getInt() != graph.getColumnCount())
+                return null;
+            int landmarkCount = header.getInt();
+            header.getInt();
+            if (header.getLong() != fingerprint)
+                return null; // Computed for another map of the same size
+            long landmarksLength = (landmarkCount * 4L + 7) & ~7L;
+            long distanceCount = (long) graph.getRowCount() * graph.getColumnCount() * landmarkCount;
+            if (landmarkCount <= 0 || distanceCount > Integer.MAX_VALUE || channel.size() != HEADER_SIZE + landmarksLength + distanceCount * 4)
+                return null;
+
+            ByteBuffer landmarks = ByteBuffer.allocate((int) landmarksLength).order(ByteOrder.LITTLE_ENDIAN);
+            BinaryMap.readFully(channel, landmarks, HEADER_SIZE);
+            int[] landmarkNodes = new int[landmarkCount];
+            landmarks.asIntBuffer().get(landmarkNodes);
+            float[] distances = new float[(int) distanceCount];
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            long position = HEADER_SIZE + landmarksLength;
+            for (int offset = 0; offset < distances.length; ) {
+                int count = Math.min(distances.length - offset, CHUNK_SIZE / 4);
+                buffer.clear().limit(count * 4);
+                BinaryMap.readFully(channel, buffer, position);
+                buffer.asFloatBuffer().get(distances, offset, count);
+                offset += count;
+                position += count * 4L;
+            }
+            return new Landmarks(landmarkNodes, distances);
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the channel
+     */
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+}
@@ -0,0 +1,108 @@
+import java.util.Arrays;
+
+/**
+ * Binary min heap of int ids ordered by double keys, the primitive form of MinHeap<Pair> as the original Dijkstra used it
+ * An id is inserted again whenever its key decreases and the stale entries are skipped by the search when they are extracted,
+ * the heap moves its entries exactly like MinHeap does, so ids with equal keys are extracted in the same order
+ * No object is created per element, the arrays are doubled when they are full
+ */
+public class LazyMinHeap {
+    private int[] ids; // Ids in heap order, index 0 is only used while percolating up, ids[1] is the minimum
+    private double[] keys; // Key of the entry at the same index
+
+    private int size;
+
+
+    /**
+     * @param capacity Number of entries the heap holds before it is resized
+     */
+    LazyMinHeap(int capacity) {
+        ids = new int[Math.max(capacity, 2)];
+        keys = new double[ids.length];
+        size = 0;
+    }
+
+
+    /**
+     * Inserts an entry, the id may already be in the heap with another key
+     * @param id  Id to be inserted
+     * @param key Key of the entry
+     */
+    public void insert(int id, double key) {
+        if (size == ids.length - 1) // If array is full, resize it
+            resize();
+
+        int hole = ++size;
+        for (keys[0] = key; key < keys[hole / 2]; hole /= 2) { // Percolate up, index 0 stops it at the root
+            ids[hole] = ids[hole / 2];
+            keys[hole] = keys[hole / 2];
+        }
+        ids[hole] = id;
+        keys[hole] = key;
+    }
+
+    /**
+     * Deletes the entry at index 1 and percolates down the last entry from there to secure heap property
+     * @return the id of the deleted entry, -1 if heap is empty
+     */
+    public int deleteMin() {
+        if (size == 0)
+            return -1;
+        int minId = ids[1];
+        ids[1] = ids[size];
+        keys[1] = keys[size--];
+        percolateDown(1);
+        return minId;
+    }
+
+    /**
+     * @return the minimum key, Double.POSITIVE_INFINITY if heap is empty
+     */
+    public double getMinKey() {
+        return size == 0 ? Double.POSITIVE_INFINITY : keys[1];
+    }
+
+    /**
+     * Given an index, moves its entry down while the smaller child has a smaller key, same comparisons as MinHeap.percolateDown
+     * @param hole Index of the entry we want to percolate down
+     */
+    private void percolateDown(int hole) {
+        int id = ids[hole];
+        double key = keys[hole];
+        while (hole * 2 <= size) { // Continue if index hole has at least 1 child
+            int childIndex = hole * 2; // Left child of index hole
+            if (childIndex != size && keys[childIndex + 1] < keys[childIndex]) // Right child exists and is smaller
+                childIndex++;
+            if (keys[childIndex] < key) { // Child is smaller than the entry, move it up
+                ids[hole] = ids[childIndex];
+                keys[hole] = keys[childIndex];
+            } else { // Otherwise, we found the position for the entry
+                break;
+            }
+            hole = childIndex;
+        }
+        ids[hole] = id;
+        keys[hole] = key;
+    }
+
+    private void resize() {
+        ids = Arrays.copyOf(ids, ids.length * 2);
+        keys = Arrays.copyOf(keys, ids.length);
+    }
+
+    /**
+     * Removes every entry in O(1) so that the heap can be reused without allocating new arrays
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,73 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Measures the startup time of loading a map with Main.readMap (Scanner), with MappedMapLoader (1 thread and every core)
+ * and from the binary map format (converted into a temporary file)
+ * Graphs of the loaders are compared so that a faster loader can not silently build a different graph
+ * Usage: java LoaderBenchmark nodeFile edgeFile [rounds [skipScanner]]
+ * Maps can be generated with MapGenerator, e.g. 500x500 and 5000x5000
+ */
+public class LoaderBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        File nodeFile = new File(args[0]); // File that stores node information
+        File edgeFile = new File(args[1]); // File that stores edge information
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3; // Every loader loads the map this many times
+        boolean skipScanner = args.length > 3 && Boolean.parseBoolean(args[3]); // Scanner takes minutes on very large maps
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        Graph reference = null; // Graph of the first loader, others must build the same graph
+        if (!skipScanner) {
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                reference = Main.readMap(nodeFile, edgeFile);
+                System.out.printf("Scanner                 : %10.1f ms%n", (System.nanoTime() - start) / 1e6);
+            }
+        }
+        for (int threadCount : new int[]{1, cores}) {
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                Graph graph = MappedMapLoader.load(nodeFile, edgeFile, threadCount);
+                System.out.printf("MappedMapLoader %2d thread: %10.1f ms%n", threadCount, (System.nanoTime() - start) / 1e6);
+                if (reference == null)
+                    reference = graph;
+                else if (!sameGraph(reference, graph))
+                    throw new IllegalStateException("MappedMapLoader built a different graph");
+            }
+        }
+
+        File binaryFile = File.createTempFile("map", ".bin");
+        binaryFile.deleteOnExit();
+        BinaryMap.write(reference, binaryFile);
+        for (boolean verifyChecksum : new boolean[]{false, true}) {
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                Graph graph = BinaryMap.load(binaryFile, verifyChecksum);
+                System.out.printf("BinaryMap checksum %-5b : %10.1f ms%n", verifyChecksum, (System.nanoTime() - start) / 1e6);
+                if (!sameGraph(reference, graph))
+                    throw new IllegalStateException("BinaryMap loaded a different graph");
+            }
+        }
+    }
+
+    /**
+     * @return True if both graphs have the same size, types and edges in the same order
+     */
+    private static boolean sameGraph(Graph graph1, Graph graph2) {
+        if (graph1.getRowCount() != graph2.getRowCount() || graph1.getColumnCount() != graph2.getColumnCount())
+            return false;
+        int nodeCount = graph1.getRowCount() * graph1.getColumnCount();
+        for (int node = 0; node < nodeCount; node++) {
+            if (graph1.getType(node) != graph2.getType(node) || graph1.getEdgeStart(node) != graph2.getEdgeStart(node)
+                    || graph1.getEdgeEnd(node) != graph2.getEdgeEnd(node))
+                return false;
+            for (int e = graph1.getEdgeStart(node); e < graph1.getEdgeEnd(node); e++) {
+                if (graph1.getTarget(e) != graph2.getTarget(e) || graph1.getWeight(e) != graph2.getWeight(e))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+}
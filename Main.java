@@ -1,46 +1,196 @@
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.function.IntPredicate;
 
 public class Main {
     public static void main(String[] args) throws IOException {
+        if (hasFlag(args, "metrics")) // Must be set before Metrics is used, it is read once
+            System.setProperty("magicalmap.metrics", "true");
+        Metrics.register();
+
         File nodeFile = new File("nodes-500-500.txt"); // File that stores node information
         File edgeFile = new File("edges-500-500.txt"); // File that stores edge information
         File objectiveFile = new File("obj-500-500-withRadius20.txt"); // File that stores objective information
-        File outputFile = new File("output.txt"); // File to write the outputs
+        String outputFormat = getOption(args, "output-format", "text"); // Encoding of the events: text, ndjson or binary
+        File outputFile = new File(getOption(args, "output", outputFormat.equals("text") ? "output.txt" : "output." + outputFormat)); // File to write the outputs
+        // With --checkpoint-interval=N the state of the run is written after every N objectives, --resume continues from it
+        File checkpointFile = new File(getOption(args, "checkpoint-file", outputFile.getPath() + ".ckpt"));
+        if (hasFlag(args, "resume") && !checkpointFile.isFile()){
+            System.out.println("Cannot find checkpoint file " + checkpointFile);
+            return;
+        }
+        Checkpoint resume = hasFlag(args, "resume") ? Checkpoint.read(checkpointFile) : null;
+
+
+        String binaryMap = getOption(args, "binary-map", null); // Precompiled map file, if it is given text files are not read
+
+        Graph graph; // Map in compressed sparse row form, searches and reveals run on it
+        try{
+            // With --verify-map the checksum of the binary map is checked, otherwise only the pages a run touches are read
+            graph = loadGraph(binaryMap, nodeFile, edgeFile, Long.parseLong(getOption(args, "tile-cache-mb", "0")) << 20, hasFlag(args, "verify-map"));
+        }catch (FileNotFoundException e){
+            System.out.println("Cannot find input file");
+            return;
+        }
+
 
+        // Planner of the paths the traveler walks on: dijkstra (default), astar, dstar (incremental D* Lite), bidirectional or hpa
+        // With --verify-planner, every path cost is compared with Dijkstra's and expansion counters are printed at the end
+        String plannerName = getOption(args, "planner", "dijkstra");
+        boolean isVerifying = hasFlag(args, "verify-planner");
+        int threadCount = Integer.parseInt(getOption(args, "threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        Simulation simulation = new Simulation(graph, plannerName, isVerifying, threadCount);
+        simulation.setSearchCacheBytes(Long.parseLong(getOption(args, "search-cache-mb", "256")) << 20); // 0 disables the cached search trees, they are only kept with --option-search-mb=0
+        simulation.setOptionSearchBytes(Long.parseLong(getOption(args, "option-search-mb", "0")) << 20); // 0 evaluates every option with its own search, through the cache
+        simulation.setHeapArity(Integer.parseInt(getOption(args, "heap-arity", "0"))); // 0 keeps the order of MinHeap<Pair>, 2, 4 or 8 uses an IndexedMinHeap
+        simulation.setReplanningAtBlocker(hasFlag(args, "replan-at-blocker")); // Walk the valid part of an invalid path before planning again
+        simulation.setRepairWindow(Integer.parseInt(getOption(args, "repair-window", "0"))); // Repair invalid paths locally, 0 plans from scratch
+        simulation.setLandmarks(loadLandmarks(args, graph, binaryMap, edgeFile, threadCount)); // Landmark bounds for A* and the repairs
+        simulation.setCheckpoint(checkpointFile, Integer.parseInt(getOption(args, "checkpoint-interval", "0"))); // 0 writes no checkpoints
+        if (resume != null)
+            resume.verify(graph, objectiveFile, simulation.getRunOptions(outputFormat)); // Before the output is cut back to the checkpoint
 
-        BufferedWriter outWriter; // To output in a file we will use BufferedWriter class
 
-        // Preparation for writing to outputFile
+        EventSink events; // Events of the run are encoded straight into a buffer and written through a FileChannel
+
+        // Preparation for writing to outputFile, a resumed run continues it from the checkpoint
         try{
-            outWriter =new BufferedWriter(new FileWriter(outputFile));
+            events = EventSink.create(outputFormat, outputFile, resume != null ? resume.getOutputLength() : 0);
         }catch (IOException e2){
             e2.printStackTrace();
             return;
         }
 
-
-        // Preparation for reading the nodeFile
-        Scanner reader; // Scanner for the node file
         try{
-            reader = new Scanner(nodeFile);
+            simulation.run(objectiveFile, events, resume);
         }catch (FileNotFoundException e){
             System.out.println("Cannot find input file");
             return;
         }
+        events.close();
 
+        if (isVerifying){
+            long expansions = simulation.getExpansions();
+            long referenceExpansions = simulation.getReferenceExpansions();
+            System.out.printf("Planner %s matched every Dijkstra %s, expanded %d nodes against Dijkstra's %d (%.1f%% saved)%n",
+                    plannerName, plannerName.equals("dstar") ? "path" : "path cost", expansions, referenceExpansions, 100.0 * (referenceExpansions - expansions) / Math.max(1, referenceExpansions));
+        }
+
+        Metrics.dump(new File(getOption(args, "metrics-json", "metrics.json"))); // Only written with --metrics
+
+    }
+
+
+    /**
+     * Loads the map, the graph is immutable so it can be shared by every simulation of the process
+     * @param binaryMap Precompiled map file, null to read the text files
+     * @param nodeFile  File that stores node information
+     * @param edgeFile  File that stores edge information
+     * @return graph of the map
+     */
+    public static Graph loadGraph(String binaryMap, File nodeFile, File edgeFile) throws IOException{
+        return loadGraph(binaryMap, nodeFile, edgeFile, 0, false);
+    }
+
+    /**
+     * Loads the map, the graph is immutable so it can be shared by every simulation of the process
+     * @param binaryMap Precompiled map file, null to read the text files
+     * @param nodeFile  File that stores node information
+     * @param edgeFile  File that stores edge information
+     * @param tileCacheBytes If it is positive, the binary map is read in tiles that use at most this much memory, for maps too large to map
+     * @param verifyMap If true, the checksum of a mapped binary map is verified, it reads the whole file before the run starts
+     * @return graph of the map
+     */
+    public static Graph loadGraph(String binaryMap, File nodeFile, File edgeFile, long tileCacheBytes, boolean verifyMap) throws IOException{
+        long start = Metrics.start();
+        Graph graph;
+        if (binaryMap != null && tileCacheBytes > 0)
+            graph = BinaryMap.loadTiled(new File(binaryMap), tileCacheBytes);
+        else if (binaryMap != null)
+            graph = BinaryMap.load(new File(binaryMap), verifyMap);
+        else
+            graph = MappedMapLoader.load(nodeFile, edgeFile, Runtime.getRuntime().availableProcessors());
+        Metrics.stop(Metrics.Phase.LOAD, start);
+        return graph;
+    }
+
+
+    /**
+     * Reads or computes the landmarks given with --landmarks=k, the file is next to the map unless --landmark-file=file is given
+     * @param args      Command line arguments
+     * @param graph     Graph of the map
+     * @param binaryMap Precompiled map file, null if the text files were read
+     * @param edgeFile  File that stores edge information
+     * @param threadCount Number of landmark searches that can run at the same time
+     * @return landmarks of the map, null if --landmarks is not given or 0
+     */
+    public static Landmarks loadLandmarks(String[] args, Graph graph, String binaryMap, File edgeFile, int threadCount) throws IOException{
+        int landmarkCount = Integer.parseInt(getOption(args, "landmarks", "0"));
+        if (landmarkCount <= 0)
+            return null;
+        File landmarkFile = new File(getOption(args, "landmark-file", (binaryMap != null ? binaryMap : edgeFile.getPath()) + ".alt"));
+        long start = Metrics.start();
+        Landmarks landmarks = Landmarks.loadOrCompute(graph, landmarkFile, landmarkCount, threadCount);
+        Metrics.stop(Metrics.Phase.LOAD, start);
+        return landmarks;
+    }
+
+
+    /**
+     * Finds the value of a command line option given as --name=value
+     * @param args Command line arguments
+     * @param name Name of the option
+     * @param defaultValue Value to return if the option is not given
+     * @return value of the option
+     */
+    public static String getOption(String[] args, String name, String defaultValue){
+        String prefix = "--" + name + "=";
+        for (String arg : args){
+            if (arg.startsWith(prefix))
+                return arg.substring(prefix.length());
+        }
+        return defaultValue;
+    }
+
+
+    /**
+     * @param args Command line arguments
+     * @param name Name of the flag
+     * @return True if the flag is given as --name or --name=true
+     */
+    public static boolean hasFlag(String[] args, String name){
+        for (String arg : args){
+            if (arg.equals("--" + name))
+                return true;
+        }
+        return Boolean.parseBoolean(getOption(args, name, "false"));
+    }
+
+
+    /**
+     * Reads the node file and the edge file with Scanner, builds the graph of the map
+     * Main loads the map with MappedMapLoader, this plain reader is kept as a reference for LoaderBenchmark
+     * @param nodeFile File that stores node information (first line is "rowCount columnCount", then "x y type" per line)
+     * @param edgeFile File that stores edge information ("x1-y1,x2-y2 weight" per line)
+     * @return graph of the map, nodes are indexed by x*columnCount+y
+     * @throws FileNotFoundException if one of the files cannot be found
+     */
+    public static Graph readMap(File nodeFile, File edgeFile) throws FileNotFoundException {
+        // Preparation for reading the nodeFile
+        Scanner reader = new Scanner(nodeFile); // Scanner for the node file
 
         String line; // Stores each line of the file
         String[] temp; // Stores the splitted version of each line
-        line = reader.nextLine();;
+        line = reader.nextLine();
         temp = line.split(" ");
 
         int rowCount = Integer.parseInt(temp[0]); // rowCount of the grid
         int columnCount = Integer.parseInt(temp[1]); // columnCount of the grid
 
 
-        Node[][] nodes = new Node[rowCount][columnCount]; // 2-D Node array that will store every node
+        int[] types = new int[rowCount * columnCount]; // Type of every node
 
         while (reader.hasNextLine()){
             line = reader.nextLine();
@@ -48,19 +198,19 @@ public class Main {
             int x = Integer.parseInt(temp[0]); // X coordinate of the node
             int y = Integer.parseInt(temp[1]); // Y coordinate of the node
             int type = Integer.parseInt(temp[2]); // Type of the node
-            nodes[x][y] = new Node(x, y, type);
+            types[x * columnCount + y] = type;
         }
 
 
         // Preparation for reading the edgeFile
-        try{
-            reader = new Scanner(edgeFile);
-        }catch (FileNotFoundException e){
-            System.out.println("Cannot find input file");
-            return;
-        }
-        line = "";
-        temp = null;
+        reader.close();
+        reader = new Scanner(edgeFile);
+
+        // Edges are collected in primitive arrays, they are doubled in size whenever they are full
+        int edgeCount = 0;
+        int[] ends1 = new int[2 * rowCount * columnCount]; // A grid has about 2 edges per node
+        int[] ends2 = new int[ends1.length];
+        double[] weights = new double[ends1.length];
 
         while (reader.hasNextLine()){
             line = reader.nextLine();
@@ -73,121 +223,46 @@ public class Main {
             int y1 = Integer.parseInt(values1[1]); // Y coordinate of 1st node
             int x2 = Integer.parseInt(values2[0]); // X coordinate of 2nd node
             int y2 = Integer.parseInt(values2[1]); // Y coordinate of 2nd node
-            Node node1 = nodes[x1][y1]; // 1st node
-            Node node2 = nodes[x2][y2]; // 2nd node
-            node1.connections.add(new Pair(node2, weight)); // Add {node2, weight} to node1's connections
-            node2.connections.add(new Pair(node1, weight)); // Add {node1, weight} to node2's connections
-        }
-
-
-        // Preparation for objectiveFile
-        try{
-            reader = new Scanner(objectiveFile);
-        }catch (FileNotFoundException e){
-            System.out.println("Cannot find input file");
-            return;
-        }
-
-
-        ArrayList<ArrayList<Integer>> objectives = new ArrayList<>(); // ArrayList of ArrayList of Integers to store objectives
-        // ArrayList<Integer> represents the x, y coordinates and options if exists
-        line = "";
-        temp = null;
-        line = reader.nextLine(); // First line represents the radiusOfSight
-        int radius = Integer.parseInt(line);
-        line = reader.nextLine(); // Second line if the starting node
-        temp = line.split(" ");
-        int startingX = Integer.parseInt(temp[0]); // Initial x coordinate of the traveler
-        int startingY = Integer.parseInt(temp[1]); // Initial y coordinate of the traveler
-        while (reader.hasNextLine()){
-            line = reader.nextLine();
-            temp = line.split(" ");
-            ArrayList<Integer> arrList = new ArrayList<>(); // Current objectives
-            for (int i = 0; i < temp.length; i++){
-                arrList.add(Integer.parseInt(temp[i]));
+            if (edgeCount == ends1.length){
+                ends1 = Arrays.copyOf(ends1, 2 * edgeCount + 1);
+                ends2 = Arrays.copyOf(ends2, ends1.length);
+                weights = Arrays.copyOf(weights, ends1.length);
             }
-            objectives.add(arrList); // Add to objectives ArrayList
+            ends1[edgeCount] = x1 * columnCount + y1;
+            ends2[edgeCount] = x2 * columnCount + y2;
+            weights[edgeCount] = weight;
+            edgeCount++;
         }
+        reader.close();
 
+        return new CsrGraph(rowCount, columnCount, types, edgeCount, ends1, ends2, weights);
+    }
 
-        Traveler traveler = new Traveler(startingX, startingY, radius, nodes); // Traveler starts from the specified starting node
-
-        // Important! Before moving the traveler first call revealNodes method 1 time since initially traveler must see his sight
-        traveler.revealNodes(new MyHashSet<>(), new MyHashSet<>(), "all"); // HashSet is empty since there is no path yet
-
-        ArrayList<Integer> options = new ArrayList<>(); // ArrayList to transmit options from previous steps to current step
-
-        MyHashSet<Integer> pickedNumbers = new MyHashSet<>(); // HashSet of numbers that was picked as an option before
-
-        int count = 1;
-        for (ArrayList<Integer> currentObjective : objectives){ // While objectives ArrayList is not empty
-            Node startNode = nodes[traveler.getX()][traveler.getY()]; // Starting node is the node where traveler stands currently
-
-
-            ArrayList<Integer> nextOptions = new ArrayList<>(); // Options to transmit to next iteration
-            for (int i = 2; i < currentObjective.size(); i++)
-                nextOptions.add(currentObjective.get(i));
-            int objectiveX = currentObjective.get(0); // X coordinate of the current objective
-            int objectiveY = currentObjective.get(1); // Y coordinate of the current objective
-            Node objectiveNode = nodes[objectiveX][objectiveY]; // Objective node
-
-
-            // If there are options from previous steps, i.e, currently you want to pick a number from wizard's offer
-            if (!options.isEmpty()){
-                double minDistance = Double.MAX_VALUE; // Minimum distance of the various paths found so far, initially infinity
-                int bestPick = Integer.MAX_VALUE; // Best pick from the given options, initial value is not important
-
-                // Iterate through options
-                for (int candidate : options) {
-                    if (pickedNumbers.contains(candidate)) // If candidate was already picked in previous steps, don't pick it, not efficient
-                        continue;
-                    pickedNumbers.insert(candidate); // Mark candidate as picked (It may not be picked)
-                    double currentDistance = dijkstra(startNode, objectiveNode, nodes, new ArrayList<>(), pickedNumbers);
-                    pickedNumbers.remove(candidate); // Remove the mark of the candidate
-                    if (currentDistance <= minDistance){ // If there is a shorter path, mark this pick as bestPick and change the minDistance of the path
-                        minDistance = currentDistance;
-                        bestPick = candidate;
-                    }
-                }
-                outWriter.write("Number " + bestPick + " is chosen!\n");
-                pickedNumbers.insert(bestPick); // Mark this number as picked, now it will be treated as type 0
-            }
-
-            // Continue until objective node is not reached
-            while (!(traveler.getX() == objectiveX && traveler.getY() == objectiveY)){
-                startNode = nodes[traveler.getX()][traveler.getY()];
-                ArrayList<Node> path = new ArrayList<>(); // Path to follow in this iteration
-                dijkstra(startNode, objectiveNode, nodes, path, pickedNumbers); // Call dijkstra to find the shortest path form startNode to objectiveNode
-                MyHashSet<Node> pathHashSet = new MyHashSet<>();
-                for (Node node : path) // Create a hashset from the path
-                    pathHashSet.insert(node);
-
-
-                // Start moving in the path (path is always given in reverse order from dijkstra, so iterate backwards)
-                for (int i = path.size()-1; i >=0; i--){
-                    String[] arr = new String[1]; // Array to retrieve the corresponding message from Traveler
-                    arr[0] = "";
-                    boolean moveSuccessful = traveler.moveToNode(path.get(i), pathHashSet, arr, pickedNumbers); // Move to next node and reveal nodes immediately
-                    // If there is a node within the path that is unreachable, path is invalid
-
-                    outWriter.write(arr[0] + "\n"); // "Moving to x-y"
-
-                    if (!moveSuccessful) { // Means path is invalid
-                        outWriter.write("Path is impassable!\n");
-                        break;
-                    }
+    /**
+     * Creates the Node objects of the graph, they are a view used to walk the traveler and to keep revealed flags
+     * @param graph Graph of the map
+     * @param visibility Revealed flags of the grid, nodes delegate their revealed flags to it
+     * @param withConnections If true, connections of the nodes are filled from the edges of the graph
+     * @return 2-D Node array that stores every node
+     */
+    public static Node[][] createNodes(Graph graph, VisibilityLayer visibility, boolean withConnections){
+        int rowCount = graph.getRowCount();
+        int columnCount = graph.getColumnCount();
+        Node[][] nodes = new Node[rowCount][columnCount];
+        for (int x = 0; x < rowCount; x++){
+            for (int y = 0; y < columnCount; y++)
+                nodes[x][y] = new Node(x, y, graph, visibility); // Type is read from the graph on use, no tile is loaded here
+        }
+        if (withConnections){
+            for (int index = 0; index < rowCount * columnCount; index++){
+                Node node = nodes[index / columnCount][index % columnCount];
+                for (int e = graph.getEdgeStart(index); e < graph.getEdgeEnd(index); e++){
+                    int target = graph.getTarget(e);
+                    node.connections.add(new Pair(nodes[target / columnCount][target % columnCount], graph.getWeight(e)));
                 }
             }
-            outWriter.write("Objective " + count + " reached!\n");
-            count++;
-
-            options = nextOptions; // Prepare the options for the next iteration
-
         }
-
-        reader.close();
-        outWriter.close();
-
+        return nodes;
     }
 
 
@@ -195,73 +270,119 @@ public class Main {
      *
      * @param startingNode starting node of the Dijkstra's algorithm
      * @param endNode end node of the Dijkstra's algorithm
-     * @param nodes 2-D Nodes array representing every node (4, 3 means node with x=4, y=3)
+     * @param graph Graph of the map, edges and types are read from it
+     * @param nodes 2-D Nodes array representing every node (4, 3 means node with x=4, y=3), only used for the path
+     * @param visibility Revealed flags of the nodes
      * @param path Shortest path that Dijkstra's algorithm will return(It is given as empty initially)
-     * @param pickedNumbers HashSet of integers representing numbers picked from wizard's offer(they will be treated as type 0)
+     * @param pickedNumbers Test of the numbers picked from wizard's offer(they will be treated as type 0)
+     * @param context Working arrays shared by every search of the run, they are reset at the beginning of the search
      * @return total path distance of the shortest path
      */
-    public static double dijkstra(Node startingNode, Node endNode, Node[][] nodes, ArrayList<Node> path, MyHashSet<Integer> pickedNumbers){
-        int rowCount = nodes.length;
-        int columnCount = nodes[0].length;
-        boolean[][] visitedNodes = new boolean[rowCount][columnCount];
+    public static double dijkstra(Node startingNode, Node endNode, Graph graph, Node[][] nodes, VisibilityLayer visibility, ArrayList<Node> path, IntPredicate pickedNumbers, SearchContext context){
         if (endNode == null) // Early terminate condition
             return 0;
+        context.reset(); // Every node is unvisited with INFINITY weight now
 
-        double[][] totalWeights =  new double[rowCount][columnCount]; // 2-D double array that stores the total weight to reach a node
-        // Initially, every weight is INFINITY
-        for (int i = 0; i < rowCount; i++){
-            for (int j = 0; j < columnCount; j++){
-                totalWeights[i][j] = Double.MAX_VALUE;
-            }
-        }
-        Node[][] previousNode = new Node[rowCount][columnCount]; // 2-D Node array of previous nodes of every node
-
-        MinHeap<Pair> pq = new MinHeap<>(rowCount*columnCount); // Priority Queue(MinHeap) that will store Pairs {node, weight}
-        pq.insert(new Pair(startingNode, 0)); // We can reach starting node with 0 weight
-        totalWeights[startingNode.getX()][startingNode.getY()] = 0;
-        previousNode[startingNode.getX()][startingNode.getY()] = startingNode;
-
-
-        while (!pq.isEmpty()){
-            Pair p = pq.deleteMin(); // Pair with minimum weight
-            Node currentNode = p.getNode(); // Node of the corresponding pair
-            if (visitedNodes[currentNode.getX()][currentNode.getY()]) // If this node is already visited, continue
-                continue;
-            if (currentNode == endNode) // Early terminate, endNode reached
-                break;
-            double currentWeight = p.getWeight(); // Weight of the corresponding pair
-            visitedNodes[currentNode.getX()][currentNode.getY()] = true;
-            // Iterate through connections
-            for (Pair neighbour : currentNode.connections){
-                Node neighbourNode = neighbour.getNode();
-                int neighX = neighbourNode.getX(); // X coordinate of the neighbour node
-                int neighY = neighbourNode.getY(); // Y coordinate of the neighbour node
-                int type = neighbourNode.getType(); // Initial type of the neighbour node
-
-                // If type is 1 or pickednumbers does not contain the node and node is revealed and type>1 or it has been visited before
-                if ((type == 1) || (neighbourNode.isRevealed() && type>1 && !pickedNumbers.contains(type)) || (visitedNodes[neighX][neighY]))
-                    continue;
-                double neighbourWeight = neighbour.getWeight(); // Weight to reach neighbour from current node
-                double totalWeight = currentWeight  + neighbourWeight; // Total weight to reach neighbour
-                if (totalWeight < totalWeights[neighX][neighY]){ // If we found a smaller weight arrival
-                    totalWeights[neighX][neighY] = totalWeight; // Change total weight
-                    pq.insert(new Pair(neighbourNode, totalWeight)); // Add node, weight to pq
-                    previousNode[neighX][neighY] = currentNode; // Change prev node of neighbour node to current node
-                }
-            }
+        int startIndex = context.index(startingNode.getX(), startingNode.getY()); // Flat index of the starting node
+        int endIndex = context.index(endNode.getX(), endNode.getY()); // Flat index of the end node
 
+        if (context.getPriorityQueue() != null)
+            context.getPriorityQueue().insert(startIndex, 0); // We can reach starting node with 0 weight
+        else
+            context.getLazyQueue().insert(startIndex, 0);
+        context.update(startIndex, 0, startIndex);
 
-        }
+        return continueDijkstra(startIndex, endIndex, graph, nodes, visibility, path, pickedNumbers, context);
+    }
 
-        // Construct the path in reverse order
-        Node currentNode = endNode;
-        while (currentNode != startingNode && currentNode!=null){
-            path.add(currentNode);
-            currentNode = previousNode[currentNode.getX()][currentNode.getY()];
+    /**
+     * Continues the search held by the context until endNode is popped, the search is not reset
+     * A search stops right after popping its end node, that node is kept as pending and expanded first when it continues,
+     * so continuing towards another end node pops the same nodes in the same order as a new search would
+     * If endNode was already visited (or is the pending node), its path is read from the context without popping anything
+     * Passability must not have changed for any node the search has reached, otherwise the search must be started over
+     * With a LazyMinHeap a node is inserted again when its weight drops and its stale entries are skipped, as the original
+     * Dijkstra did with MinHeap<Pair>, so nodes of equal weight are popped in its order and the paths are the same
+     * @param startIndex flat index of the node the search started from
+     * @param endIndex flat index of the end node
+     * @param graph Graph of the map, edges and types are read from it
+     * @param nodes 2-D Nodes array representing every node, only used for the path
+     * @param visibility Revealed flags of the nodes
+     * @param path Shortest path is added to it in reverse order(It is given as empty initially)
+     * @param pickedNumbers Test of the numbers picked from wizard's offer, same as the ones the search started with
+     * @param context Working arrays of the search to continue
+     * @return total path distance of the shortest path
+     */
+    public static double continueDijkstra(int startIndex, int endIndex, Graph graph, Node[][] nodes, VisibilityLayer visibility, ArrayList<Node> path, IntPredicate pickedNumbers, SearchContext context){
+        IndexedMinHeap pq = context.getPriorityQueue(); // Priority Queue that stores node indexes by their total weight, null if it is lazy
+        LazyMinHeap lazyQueue = context.getLazyQueue(); // Priority Queue with duplicate entries, null if pq is used
+        long popped = 0, scanned = 0, relaxed = 0; // Counted for Metrics, the JIT drops them when metrics are disabled
+
+        if (!context.isVisited(endIndex) && context.getPendingNode() != endIndex){ // Otherwise endNode is already settled
+            int currentIndex = context.getPendingNode(); // Node popped by the previous call is expanded before popping new ones
+            context.setPendingNode(-1);
+            while (currentIndex != -1 || !(pq != null ? pq.isEmpty() : lazyQueue.isEmpty())){
+                if (currentIndex == -1){
+                    currentIndex = pq != null ? pq.deleteMin() : lazyQueue.deleteMin(); // Index of the node with minimum weight
+                    popped++;
+                    if (context.isVisited(currentIndex)){ // Stale entry of the lazy queue, pq holds every node at most once
+                        currentIndex = -1;
+                        continue;
+                    }
+                }
+                if (currentIndex == endIndex){ // Early terminate, endNode reached
+                    context.setPendingNode(currentIndex); // It is expanded if the search continues
+                    break;
+                }
+                double currentWeight = context.getTotalWeight(currentIndex); // Weight to reach the current node
+                context.markVisited(currentIndex);
+                // Iterate through edges
+                int edgeEnd = graph.getEdgeEnd(currentIndex);
+                scanned += edgeEnd - graph.getEdgeStart(currentIndex);
+                for (int e = graph.getEdgeStart(currentIndex); e < edgeEnd; e++){
+                    int neighbourIndex = graph.getTarget(e); // Flat index of the neighbour node
+                    // If it has been visited before or it is not passable
+                    if (context.isVisited(neighbourIndex) || !isPassable(graph, visibility, neighbourIndex, pickedNumbers))
+                        continue;
+                    double totalWeight = currentWeight + graph.getWeight(e); // Total weight to reach neighbour
+                    if (totalWeight < context.getTotalWeight(neighbourIndex)){ // If we found a smaller weight arrival
+                        context.update(neighbourIndex, totalWeight, currentIndex); // Change total weight and prev node of neighbour node to current node
+                        relaxed++;
+                        if (pq != null)
+                            pq.insertOrDecrease(neighbourIndex, totalWeight); // Add node to pq or decrease its key if it is already there
+                        else
+                            lazyQueue.insert(neighbourIndex, totalWeight); // Add node, weight to the queue, the old entry becomes stale
+                    }
+                }
+                currentIndex = -1;
+            }
         }
 
+        context.addPath(startIndex, endIndex, nodes, path); // Construct the path in reverse order
+        Metrics.add(Metrics.Counter.SEARCHES, 1);
+        Metrics.add(Metrics.Counter.NODES_POPPED, popped);
+        Metrics.add(Metrics.Counter.EDGES_SCANNED, scanned);
+        Metrics.add(Metrics.Counter.EDGES_RELAXED, relaxed);
 
-        return totalWeights[endNode.getX()][endNode.getY()]; // Return the distance of the shortest path
+        return context.getTotalWeight(endIndex); // Return the distance of the shortest path
+    }
+
+    /**
+     * A node can be entered if its type is not 1, and if its type is greater than 1 it must either be unrevealed
+     * or picked from wizard's offer
+     * @param graph Graph of the map
+     * @param visibility Revealed flags of the nodes
+     * @param node flat index of the node
+     * @param pickedNumbers Test of the numbers picked from wizard's offer
+     * @return True if the node can be entered
+     */
+    public static boolean isPassable(Graph graph, VisibilityLayer visibility, int node, IntPredicate pickedNumbers){
+        int type = graph.getType(node);
+        if (type == 1)
+            return false;
+        if (type > 1)
+            return !visibility.isRevealed(node) || pickedNumbers.test(type);
+        return true;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates random node, edge and objective files in the format Main reads, the same seed always generates the same files
+ * Every node is connected to its right and upper neighbours with a random weight in [1, 10]
+ * Usage: java MapGenerator rowCount columnCount [outputDirectory [seed]] [--blocked=ratio] [--special=ratio] [--radius=r] [--objectives=k]
+ * Files are named nodes-rowCount-columnCount.txt and edges-rowCount-columnCount.txt,
+ * with --objectives=k (k > 0) obj-rowCount-columnCount-withRadiusR.txt is written too
+ */
+public class MapGenerator {
+    public static final double BLOCKED_DENSITY = 0.08; // Default ratio of type 1 nodes
+    public static final double SPECIAL_DENSITY = 0.06; // Default ratio of special nodes (types 2 to 9)
+    private static final double OPTION_PROBABILITY = 0.4; // Probability that an objective comes with wizard's offer
+
+
+    public static void main(String[] args) throws IOException {
+        ArrayList<String> positional = new ArrayList<>(); // Arguments that are not options
+        for (String arg : args) {
+            if (!arg.startsWith("--"))
+                positional.add(arg);
+        }
+        int rowCount = Integer.parseInt(positional.get(0));
+        int columnCount = Integer.parseInt(positional.get(1));
+        File directory = new File(positional.size() > 2 ? positional.get(2) : ".");
+        long seed = positional.size() > 3 ? Long.parseLong(positional.get(3)) : 1;
+        double blockedDensity = Double.parseDouble(Main.getOption(args, "blocked", String.valueOf(BLOCKED_DENSITY)));
+        double specialDensity = Double.parseDouble(Main.getOption(args, "special", String.valueOf(SPECIAL_DENSITY)));
+        int radius = Integer.parseInt(Main.getOption(args, "radius", "20"));
+        int objectiveCount = Integer.parseInt(Main.getOption(args, "objectives", "0"));
+
+        String suffix = rowCount + "-" + columnCount;
+        int[] types = generate(rowCount, columnCount, seed, blockedDensity, specialDensity,
+                new File(directory, "nodes-" + suffix + ".txt"), new File(directory, "edges-" + suffix + ".txt"));
+        if (objectiveCount > 0)
+            generateObjectives(rowCount, columnCount, types, radius, objectiveCount, seed,
+                    new File(directory, "obj-" + suffix + "-withRadius" + radius + ".txt"));
+    }
+
+    /**
+     * Writes the node file and the edge file of a random grid with the default densities
+     */
+    public static int[] generate(int rowCount, int columnCount, long seed, File nodeFile, File edgeFile) throws IOException {
+        return generate(rowCount, columnCount, seed, BLOCKED_DENSITY, SPECIAL_DENSITY, nodeFile, edgeFile);
+    }
+
+    /**
+     * Writes the node file and the edge file of a random grid
+     * @param rowCount       Row count of the grid
+     * @param columnCount    Column count of the grid
+     * @param seed           Seed of the random generator
+     * @param blockedDensity Ratio of type 1 nodes
+     * @param specialDensity Ratio of special nodes (types 2 to 9)
+     * @param nodeFile       File to write node information
+     * @param edgeFile       File to write edge information
+     * @return types of the nodes, indexed by x*columnCount+y
+     */
+    public static int[] generate(int rowCount, int columnCount, long seed, double blockedDensity, double specialDensity,
+                                 File nodeFile, File edgeFile) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder line = new StringBuilder();
+        int[] types = new int[rowCount * columnCount];
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(nodeFile), 1 << 16)) {
+            writer.write(rowCount + " " + columnCount + "\n");
+            for (int x = 0; x < rowCount; x++) {
+                for (int y = 0; y < columnCount; y++) {
+                    double r = random.nextDouble();
+                    int type = 0;
+                    if (r < blockedDensity)
+                        type = 1;
+                    else if (r < blockedDensity + specialDensity)
+                        type = 2 + random.nextInt(8);
+                    types[x * columnCount + y] = type;
+                    line.setLength(0);
+                    line.append(x).append(' ').append(y).append(' ').append(type).append('\n');
+                    writer.append(line);
+                }
+            }
+        }
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(edgeFile), 1 << 16)) {
+            for (int x = 0; x < rowCount; x++) {
+                for (int y = 0; y < columnCount; y++) {
+                    if (x + 1 < rowCount)
+                        writeEdge(writer, line, x, y, x + 1, y, random);
+                    if (y + 1 < columnCount)
+                        writeEdge(writer, line, x, y, x, y + 1, random);
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Writes an objective file: radius of sight, starting node, then one objective per line
+     * Starting node and objectives are type 0 nodes reachable from the starting node through nodes that are not type 1,
+     * an objective comes with wizard's offer (1 to 4 distinct types from 2 to 9) with probability OPTION_PROBABILITY
+     * @param types          Types of the nodes returned by generate
+     * @param radius         Radius of sight of the traveler
+     * @param objectiveCount Number of objectives
+     * @param objectiveFile  File to write objective information
+     */
+    public static void generateObjectives(int rowCount, int columnCount, int[] types, int radius, int objectiveCount,
+                                          long seed, File objectiveFile) throws IOException {
+        Random random = new Random(seed ^ 0x5DEECE66DL);
+        int start;
+        do {
+            start = random.nextInt(types.length);
+        } while (types[start] != 0);
+
+        // Breadth first search from the starting node, objectives are chosen among the reached type 0 nodes
+        int[] reached = new int[types.length];
+        boolean[] isReached = new boolean[types.length];
+        int head = 0;
+        int tail = 0;
+        reached[tail++] = start;
+        isReached[start] = true;
+        int freeCount = 0; // Reached type 0 nodes are moved to the front of reached
+        while (head < tail) {
+            int node = reached[head++];
+            int x = node / columnCount;
+            int y = node % columnCount;
+            int[] neighbours = {x > 0 ? node - columnCount : -1, x + 1 < rowCount ? node + columnCount : -1,
+                    y > 0 ? node - 1 : -1, y + 1 < columnCount ? node + 1 : -1};
+            for (int neighbour : neighbours) {
+                if (neighbour != -1 && !isReached[neighbour] && types[neighbour] != 1) {
+                    isReached[neighbour] = true;
+                    reached[tail++] = neighbour;
+                }
+            }
+            if (types[node] == 0)
+                reached[freeCount++] = node; // Never overwrites an unprocessed node since freeCount <= head
+        }
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(objectiveFile))) {
+            writer.write(radius + "\n");
+            writer.write(start / columnCount + " " + start % columnCount + "\n");
+            for (int i = 0; i < objectiveCount; i++) {
+                int objective = reached[random.nextInt(freeCount)];
+                StringBuilder line = new StringBuilder();
+                line.append(objective / columnCount).append(' ').append(objective % columnCount);
+                if (random.nextDouble() < OPTION_PROBABILITY) {
+                    int optionCount = 1 + random.nextInt(4);
+                    int[] candidates = {2, 3, 4, 5, 6, 7, 8, 9};
+                    for (int j = 0; j < optionCount; j++) { // Partial Fisher-Yates shuffle picks distinct types
+                        int k = j + random.nextInt(candidates.length - j);
+                        int swap = candidates[j];
+                        candidates[j] = candidates[k];
+                        candidates[k] = swap;
+                        line.append(' ').append(candidates[j]);
+                    }
+                }
+                writer.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    /**
+     * Writes "x1-y1,x2-y2 weight" where weight has 3 decimals
+     */
+    private static void writeEdge(BufferedWriter writer, StringBuilder line, int x1, int y1, int x2, int y2, Random random) throws IOException {
+        int weight = 1000 + random.nextInt(9001); // Weight in thousandths
+        line.setLength(0);
+        line.append(x1).append('-').append(y1).append(',').append(x2).append('-').append(y2).append(' ');
+        line.append(weight / 1000).append('.');
+        int fraction = weight % 1000;
+        if (fraction < 100)
+            line.append('0');
+        if (fraction < 10)
+            line.append('0');
+        line.append(fraction).append('\n');
+        writer.append(line);
+    }
+
+}
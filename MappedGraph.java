@@ -0,0 +1,87 @@
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Graph in compressed sparse row form that reads straight from the sections of a memory-mapped binary map file
+ * Nothing is copied to the heap, processes that map the same file share its pages through the page cache
+ * Types are stored in 1 byte when every type fits, in 4 bytes otherwise
+ */
+public class MappedGraph implements Graph {
+    private final int rowCount; // Row count of the grid
+    private final int columnCount; // Column count of the grid
+
+    private final ByteBuffer byteTypes; // Type of each node if types are 1 byte, null otherwise
+    private final IntBuffer intTypes; // Type of each node if types are 4 bytes, null otherwise
+    private final IntBuffer offsets; // Index of the first edge of each node, offsets[nodeCount] is the edge count
+    private final IntBuffer targets; // Node each edge goes to
+    private final DoubleBuffer weights; // Weight of each edge
+    private volatile double minWeightPerStep = -1; // Scale of the Manhattan heuristic, computed on first use since it reads every edge
+    // Graph is shared by concurrent scenarios, two of them may compute it at the same time but they write the same value
+
+
+    /**
+     * @param rowCount    Row count of the grid
+     * @param columnCount Column count of the grid
+     * @param byteTypes   Types section if types are 1 byte, null otherwise
+     * @param intTypes    Types section if types are 4 bytes, null otherwise
+     * @param offsets     Offsets section
+     * @param targets     Targets section
+     * @param weights     Weights section
+     */
+    MappedGraph(int rowCount, int columnCount, ByteBuffer byteTypes, IntBuffer intTypes, IntBuffer offsets, IntBuffer targets, DoubleBuffer weights) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.byteTypes = byteTypes;
+        this.intTypes = intTypes;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public int getType(int node) {
+        if (byteTypes != null)
+            return byteTypes.get(node);
+        return intTypes.get(node);
+    }
+
+    @Override
+    public int getEdgeStart(int node) {
+        return offsets.get(node);
+    }
+
+    @Override
+    public int getEdgeEnd(int node) {
+        return offsets.get(node + 1);
+    }
+
+    @Override
+    public int getTarget(int edge) {
+        return targets.get(edge);
+    }
+
+    @Override
+    public double getWeight(int edge) {
+        return weights.get(edge);
+    }
+
+    @Override
+    public double getMinWeightPerStep() {
+        if (minWeightPerStep < 0)
+            minWeightPerStep = Graph.computeMinWeightPerStep(this);
+        return minWeightPerStep;
+    }
+
+}
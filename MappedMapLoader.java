@@ -0,0 +1,156 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the node and edge files through memory-mapped MappedTextReaders instead of Scanner and String.split
+ * Node types and edges are read in a single pass each, then packed into a CsrGraph
+ * The edge file can be split into line-aligned parts that are parsed by several threads,
+ * parts are concatenated in file order so the graph is identical to the one of a single thread
+ */
+public class MappedMapLoader {
+
+    /**
+     * @param nodeFile    File that stores node information (first line is "rowCount columnCount", then "x y type" per line)
+     * @param edgeFile    File that stores edge information ("x1-y1,x2-y2 weight" per line)
+     * @param threadCount Number of threads that parse the edge file
+     * @return graph of the map, nodes are indexed by x*columnCount+y
+     * @throws FileNotFoundException if one of the files cannot be found
+     * @throws IOException if one of the files cannot be read
+     */
+    public static Graph load(File nodeFile, File edgeFile, int threadCount) throws IOException {
+        int rowCount;
+        int columnCount;
+        int[] types; // Type of every node
+        try (RandomAccessFile file = new RandomAccessFile(nodeFile, "r")) {
+            FileChannel channel = file.getChannel();
+            MappedTextReader reader = new MappedTextReader(channel, 0, channel.size());
+            reader.hasNextLine();
+            rowCount = reader.nextInt(); // First line is rowCount and columnCount of the grid
+            columnCount = reader.nextInt();
+            reader.skipLine();
+            types = new int[rowCount * columnCount];
+            while (reader.hasNextLine()) {
+                int x = reader.nextInt(); // X coordinate of the node
+                int y = reader.nextInt(); // Y coordinate of the node
+                types[x * columnCount + y] = reader.nextInt();
+                reader.skipLine();
+            }
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(edgeFile, "r")) {
+            FileChannel channel = file.getChannel();
+            long size = channel.size();
+            int partCount = (int) Math.max(1, Math.min(threadCount, size / (1 << 20))); // Parts smaller than 1 MB are not worth a thread
+            long[] bounds = new long[partCount + 1]; // Part i is the lines starting in [bounds[i], bounds[i+1])
+            for (int i = 1; i < partCount; i++)
+                bounds[i] = MappedTextReader.lineStartAfter(channel, size / partCount * i);
+            bounds[partCount] = size;
+
+            EdgeList[] parts = new EdgeList[partCount];
+            if (partCount == 1) {
+                parts[0] = readEdges(channel, 0, size, columnCount, rowCount * columnCount * 2);
+            } else {
+                ExecutorService executor = Executors.newFixedThreadPool(partCount);
+                try {
+                    ArrayList<Future<EdgeList>> futures = new ArrayList<>();
+                    for (int i = 0; i < partCount; i++) {
+                        long start = bounds[i];
+                        long end = bounds[i + 1];
+                        int expectedEdges = rowCount * columnCount * 2 / partCount + 1;
+                        futures.add(executor.submit(() -> readEdges(channel, start, end, columnCount, expectedEdges)));
+                    }
+                    for (int i = 0; i < partCount; i++)
+                        parts[i] = futures.get(i).get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IOException("Cannot read edge file", e);
+                } finally {
+                    executor.shutdown();
+                }
+            }
+
+            EdgeList edges = EdgeList.concatenate(parts);
+            return new CsrGraph(rowCount, columnCount, types, edges.size, edges.ends1, edges.ends2, edges.weights);
+        }
+    }
+
+    /**
+     * Reads the edges whose lines start in [start, end)
+     * @param expectedEdges Initial capacity of the list
+     */
+    private static EdgeList readEdges(FileChannel channel, long start, long end, int columnCount, int expectedEdges) throws IOException {
+        EdgeList edges = new EdgeList(expectedEdges);
+        if (start >= end)
+            return edges;
+        MappedTextReader reader = new MappedTextReader(channel, start, end);
+        while (reader.hasNextLine()) {
+            int x1 = reader.nextInt(); // X coordinate of 1st node
+            int y1 = reader.nextInt(); // Y coordinate of 1st node
+            int x2 = reader.nextInt(); // X coordinate of 2nd node
+            int y2 = reader.nextInt(); // Y coordinate of 2nd node
+            double weight = reader.nextDouble(); // Weight of the edge
+            reader.skipLine();
+            edges.add(x1 * columnCount + y1, x2 * columnCount + y2, weight);
+        }
+        return edges;
+    }
+
+
+    /**
+     * Growable primitive arrays of undirected edges
+     */
+    private static class EdgeList {
+        private int[] ends1;
+        private int[] ends2;
+        private double[] weights;
+        private int size;
+
+        EdgeList(int capacity) {
+            ends1 = new int[Math.max(capacity, 16)];
+            ends2 = new int[ends1.length];
+            weights = new double[ends1.length];
+            size = 0;
+        }
+
+        void add(int end1, int end2, double weight) {
+            if (size == ends1.length) { // Double the arrays when they are full
+                ends1 = Arrays.copyOf(ends1, 2 * size);
+                ends2 = Arrays.copyOf(ends2, 2 * size);
+                weights = Arrays.copyOf(weights, 2 * size);
+            }
+            ends1[size] = end1;
+            ends2[size] = end2;
+            weights[size] = weight;
+            size++;
+        }
+
+        /**
+         * @param parts Lists in file order
+         * @return one list with the edges of every part in the same order
+         */
+        static EdgeList concatenate(EdgeList[] parts) {
+            if (parts.length == 1)
+                return parts[0];
+            int total = 0;
+            for (EdgeList part : parts)
+                total += part.size;
+            EdgeList all = new EdgeList(total);
+            for (EdgeList part : parts) {
+                System.arraycopy(part.ends1, 0, all.ends1, all.size, part.size);
+                System.arraycopy(part.ends2, 0, all.ends2, all.size, part.size);
+                System.arraycopy(part.weights, 0, all.weights, all.size, part.size);
+                all.size += part.size;
+            }
+            return all;
+        }
+    }
+
+}
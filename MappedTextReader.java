@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads numbers directly from the bytes of a memory-mapped text file without creating Strings
+ * Only lines that start in [start, end) of the file are read, so a file can be split between several readers
+ * Files larger than a mapping are read through consecutive windows, a window is moved before a line could cross its end
+ */
+public class MappedTextReader {
+    private static final long WINDOW_SIZE = 1L << 28; // Bytes mapped at a time
+    private static final int MAX_LINE_LENGTH = 4096; // A line is never longer than this, window is moved when less bytes remain
+
+    private static final double[] POWERS_OF_TEN = new double[23]; // 10^0 ... 10^22, all of them are exact doubles
+    private static final long MAX_EXACT_MANTISSA = 1L << 53; // Larger longs are not exact doubles
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final FileChannel channel; // Channel of the file, it is not closed by this class
+    private final long fileSize; // Size of the file
+    private final long end; // Lines starting at or after this offset are not read
+
+    private MappedByteBuffer buffer; // Current window
+    private long windowStart; // File offset of the first byte of the window
+    private int position; // Position of the next byte inside the window
+
+
+    /**
+     * @param channel Channel of the file
+     * @param start   Offset of the first line to read, it must be the beginning of a line
+     * @param end     Offset after which lines are not read
+     */
+    MappedTextReader(FileChannel channel, long start, long end) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.end = end;
+        map(start);
+    }
+
+
+    /**
+     * Maps a new window starting from the given file offset
+     * @param offset File offset of the first byte of the window
+     */
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, fileSize - offset));
+        position = 0;
+    }
+
+    /**
+     * Skips line breaks and blank characters, moves the window if the next line could cross its end
+     * @return True if there is another line that starts before the end of this reader
+     */
+    public boolean hasNextLine() throws IOException {
+        while (true) {
+            if (buffer.limit() - position < MAX_LINE_LENGTH && windowStart + buffer.limit() < fileSize)
+                map(windowStart + position);
+            if (windowStart + position >= end || position >= buffer.limit())
+                return false;
+            byte b = buffer.get(position);
+            if (b != '\n' && b != '\r' && b != ' ' && b != '\t')
+                return true;
+            position++;
+        }
+    }
+
+    /**
+     * Skips every byte that is not a digit, then reads a non-negative integer
+     * @return the integer
+     */
+    public int nextInt() {
+        byte b = buffer.get(position);
+        while (b < '0' || b > '9')
+            b = buffer.get(++position);
+        int value = 0;
+        while (b >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            position++;
+            if (position == buffer.limit()) // End of file
+                break;
+            b = buffer.get(position);
+        }
+        return value;
+    }
+
+    /**
+     * Skips blanks, then reads a double
+     * Plain decimals whose digits form a mantissa of at most 2^53 (15 digits always fit) are computed as
+     * mantissa / 10^fractionDigits, both operands are exact doubles, so the one rounding of the division gives the
+     * value that Double.parseDouble would return
+     * Anything else (exponents, longer mantissas) falls back to Double.parseDouble
+     * @return the double
+     */
+    public double nextDouble() {
+        byte b = buffer.get(position);
+        while (b == ' ' || b == '\t')
+            b = buffer.get(++position);
+        int start = position;
+        boolean negative = false;
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            b = buffer.get(++position);
+        }
+        long mantissa = 0;
+        int digits = 0; // Digits in mantissa
+        int fractionDigits = -1; // Digits after the '.', -1 until the '.' is seen
+        boolean simple = true; // False if the number can not be computed exactly from mantissa
+        while (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+            if (b >= '0' && b <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (fractionDigits >= 0)
+                        fractionDigits++;
+                } else {
+                    simple = false;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                simple = false;
+            }
+            position++;
+            if (position == buffer.limit()) // End of file
+                break;
+            b = buffer.get(position);
+        }
+        if (simple && mantissa <= MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length) {
+            double value = fractionDigits <= 0 ? mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        byte[] bytes = new byte[position - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(start + i);
+        return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Skips the rest of the current line
+     */
+    public void skipLine() {
+        while (position < buffer.limit() && buffer.get(position) != '\n')
+            position++;
+    }
+
+    /**
+     * Finds the beginning of the first line that starts at or after the given offset
+     * @param channel Channel of the file
+     * @param offset  Offset to search from
+     * @return offset of the beginning of the line, size of the file if there is not any
+     */
+    public static long lineStartAfter(FileChannel channel, long offset) throws IOException {
+        if (offset == 0)
+            return 0;
+        long fileSize = channel.size();
+        long current = offset - 1; // If the previous byte is a line break, offset is already a line start
+        while (current < fileSize) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, current, Math.min(MAX_LINE_LENGTH, fileSize - current));
+            for (int i = 0; i < window.limit(); i++) {
+                if (window.get(i) == '\n')
+                    return current + i + 1;
+            }
+            current += window.limit();
+        }
+        return fileSize;
+    }
+
+}
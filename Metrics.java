@@ -0,0 +1,170 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of the simulation, shared by every thread of the process
+ * Metrics are enabled with the system property magicalmap.metrics=true (Main sets it for --metrics) before this class is used,
+ * ENABLED is a static final constant, so when it is false the JIT removes the counting and timing code of the hot paths
+ * Counters are striped LongAdders, so concurrent searches and scenarios do not contend on them
+ */
+public class Metrics implements MetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("magicalmap.metrics");
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    /**
+     * Events that are counted
+     */
+    public enum Counter {
+        SEARCHES, // Calls of Main.dijkstra and Main.continueDijkstra
+        NODES_POPPED, // Nodes extracted from the priority queue by Main.dijkstra
+        EDGES_SCANNED, // Edges looked at by Main.dijkstra
+        EDGES_RELAXED, // Edges that lowered the total weight of their target in Main.dijkstra
+        PLANNER_EXPANSIONS, // Nodes expanded by the planner of the traveler, whatever its algorithm is
+        REVEAL_CELLS, // Cells scanned by Traveler.revealNodes
+        MOVES, // Steps of the traveler
+        REPLANS, // Paths that became impassable, each one causes a new search
+        OBJECTIVES, // Objectives reached
+        CACHE_HITS, // Searches answered from a cached shortest-path tree without expanding any node
+        CACHE_RESUMES, // Searches that continued a cached tree until their end node was reached
+        CACHE_MISSES, // Searches that had no cached tree and started from scratch
+        CACHE_INVALIDATIONS, // Cached trees dropped since a revealed node blocked a node they had reached
+        TILE_LOADS, // Tiles of a TiledGraph read from the map file
+        TILE_EVICTIONS, // Tiles of a TiledGraph dropped to stay in its memory budget
+        LOCAL_REPAIRS, // Replans answered by RepairingPlanner instead of the wrapped planner
+        REPAIR_FALLBACKS, // Repairs whose window had to grow to the whole grid before the path was proved
+        REPAIR_TIES, // Repairs dropped since another path had the same cost, the wrapped planner planned them
+        DSTAR_FALLBACKS // Plans of DStarLitePlanner with an equal-cost alternative, planned by Dijkstra to take its path
+    }
+
+    /**
+     * Parts of the run whose durations are recorded
+     */
+    public enum Phase {
+        LOAD, // Loading the map
+        SEARCH, // One path search of the planner
+        OPTIONS, // Evaluation of wizard's options for one objective
+        REVEAL, // One move of the traveler with its reveal
+        OBJECTIVE, // Everything done for one objective
+        SIMULATION, // One whole run over an objective file
+        CHECKPOINT // Writing one checkpoint of a run
+    }
+
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+
+
+    private Metrics() {
+        for (int i = 0; i < counters.length; i++)
+            counters[i] = new LongAdder();
+        for (int i = 0; i < histograms.length; i++)
+            histograms[i] = new LatencyHistogram();
+    }
+
+
+    /**
+     * Adds to a counter, nothing happens if metrics are disabled
+     */
+    public static void add(Counter counter, long value) {
+        if (ENABLED)
+            INSTANCE.counters[counter.ordinal()].add(value);
+    }
+
+    /**
+     * @return start time to give to stop, 0 if metrics are disabled (System.nanoTime is not even called)
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time elapsed since start into the histogram of the phase, nothing happens if metrics are disabled
+     * @param start Value returned by start
+     */
+    public static void stop(Phase phase, long start) {
+        if (ENABLED)
+            INSTANCE.histograms[phase.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Registers the metrics as the MXBean magicalmap:type=Metrics of the platform MBean server, if they are enabled
+     */
+    public static void register() {
+        if (!ENABLED)
+            return;
+        try {
+            ObjectName name = new ObjectName("magicalmap:type=Metrics");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+        } catch (JMException e) {
+            System.out.println("Cannot register metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the JSON summary of the metrics to the file, if they are enabled
+     */
+    public static void dump(File file) throws IOException {
+        if (!ENABLED)
+            return;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(INSTANCE.getJson());
+            writer.write('\n');
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Counter counter : Counter.values())
+            values.put(counter.name(), counters[counter.ordinal()].sum());
+        return values;
+    }
+
+    @Override
+    public Map<String, Double> getPhaseP99Millis() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Phase phase : Phase.values())
+            values.put(phase.name(), histograms[phase.ordinal()].getPercentile(99) / 1e6);
+        return values;
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder json = new StringBuilder("{\"counters\":{");
+        for (Counter counter : Counter.values()) {
+            if (counter.ordinal() > 0)
+                json.append(',');
+            json.append('"').append(counter.name()).append("\":").append(counters[counter.ordinal()].sum());
+        }
+        json.append("},\"phases\":{");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = histograms[phase.ordinal()];
+            if (phase.ordinal() > 0)
+                json.append(',');
+            json.append('"').append(phase.name()).append("\":{\"count\":").append(histogram.getCount());
+            json.append(String.format(Locale.ROOT, ",\"totalMs\":%.3f,\"meanMs\":%.3f,\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f}",
+                    histogram.getTotal() / 1e6, histogram.getMean() / 1e6, histogram.getPercentile(50) / 1e6,
+                    histogram.getPercentile(90) / 1e6, histogram.getPercentile(99) / 1e6, histogram.getMax() / 1e6));
+        }
+        return json.append("}}").toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : counters)
+            counter.reset();
+        for (LatencyHistogram histogram : histograms)
+            histogram.reset();
+    }
+
+}
@@ -0,0 +1,28 @@
+import java.util.Map;
+
+/**
+ * Management interface of Metrics, registered as magicalmap:type=Metrics when metrics are enabled
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return value of every counter by name
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return 99th percentile of every phase in milliseconds by name
+     */
+    Map<String, Double> getPhaseP99Millis();
+
+    /**
+     * @return counters and phase histograms as a JSON object
+     */
+    String getJson();
+
+    /**
+     * Sets every counter and histogram to zero
+     */
+    void reset();
+
+}
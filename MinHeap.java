@@ -72,6 +72,15 @@ public class MinHeap<T extends Comparable<T>>{
         System.arraycopy(temp, 0, array, 0, temp.length);
     }
 
+    /**
+     * Removes every element so that the heap can be reused without allocating a new array
+     */
+    public void clear(){
+        for (int i = 1; i <= size; i++) // Drop references of the remaining elements
+            array[i] = null;
+        size = 0;
+    }
+
     public boolean isEmpty(){
         return size == 0;
     }
@@ -0,0 +1,65 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes one JSON object per line (newline delimited JSON), the "event" field gives the type of the event:
+ * {"event":"move","x":4,"y":3}, {"event":"impassable"}, {"event":"chosen","number":5}, {"event":"reached","objective":1}
+ */
+public class NdjsonEventSink extends ChannelEventSink {
+    private static final int MAX_LINE_LENGTH = 64; // Longest line an event can be encoded to
+
+    private static final byte[] MOVE_X = ascii("{\"event\":\"move\",\"x\":");
+    private static final byte[] MOVE_Y = ascii(",\"y\":");
+    private static final byte[] IMPASSABLE = ascii("{\"event\":\"impassable\"}\n");
+    private static final byte[] CHOSEN = ascii("{\"event\":\"chosen\",\"number\":");
+    private static final byte[] REACHED = ascii("{\"event\":\"reached\",\"objective\":");
+    private static final byte[] END = ascii("}\n");
+
+
+    /**
+     * @param file         File to write the events, it is created or truncated
+     * @param resumeLength Length the file is cut to and continued from, 0 truncates it
+     */
+    NdjsonEventSink(File file, long resumeLength) throws IOException {
+        super(file, resumeLength);
+    }
+
+
+    @Override
+    public String getFormat() {
+        return "ndjson";
+    }
+
+    @Override
+    public void move(int x, int y) throws IOException {
+        ensureRemaining(MAX_LINE_LENGTH);
+        buffer.put(MOVE_X);
+        putDecimal(x);
+        buffer.put(MOVE_Y);
+        putDecimal(y);
+        buffer.put(END);
+    }
+
+    @Override
+    public void impassable() throws IOException {
+        ensureRemaining(MAX_LINE_LENGTH);
+        buffer.put(IMPASSABLE);
+    }
+
+    @Override
+    public void numberChosen(int number) throws IOException {
+        ensureRemaining(MAX_LINE_LENGTH);
+        buffer.put(CHOSEN);
+        putDecimal(number);
+        buffer.put(END);
+    }
+
+    @Override
+    public void objectiveReached(int objective) throws IOException {
+        ensureRemaining(MAX_LINE_LENGTH);
+        buffer.put(REACHED);
+        putDecimal(objective);
+        buffer.put(END);
+    }
+
+}
@@ -5,40 +5,44 @@ public class Node {
 
     private final int y; // Y coordinate of the node
 
-    private boolean isRevealed; // Stores if the node has been revealed by the traveler or not
+    private final VisibilityLayer visibility; // Stores if the node has been revealed by the traveler or not
 
-    private final int type;
+    private final Graph graph; // Graph of the map, the type is read from it when it is asked for, so creating the nodes of a
+    // TiledGraph does not load every tile
 
 
     ArrayList<Pair> connections = new ArrayList<>(); // ArrayList of Pairs to store the connections of the node
     // Each node has at most 4 connections, so using an ArrayList is not considered as inefficient in this case
+    // Searches read the edges from Graph, connections are only filled when Main.createNodes is asked to
 
 
     /**
      * Constructor
      * @param x X coordinate of the node to be created
      * @param y Y coordinate of the node to be created
+     * @param graph Graph of the map, the type of the node is read from it
+     * @param visibility Revealed flags of the grid, the node reads and writes its own bit
      */
-    Node(int x, int y, int type){
+    Node(int x, int y, Graph graph, VisibilityLayer visibility){
         this.x = x;
         this.y = y;
-        isRevealed = false; // Initially, nodes are not revealed
-        this.type = type;
+        this.graph = graph;
+        this.visibility = visibility;
     }
 
 
     public void revealNode(){
-        isRevealed = true;
+        visibility.reveal(x * visibility.getColumnCount() + y);
     }
 
     public boolean isRevealed(){
-        return isRevealed;
+        return visibility.isRevealed(x, y);
     }
 
 
     // Getters
     public int getType(){
-        return type;
+        return graph.getType(x * graph.getColumnCount() + y);
     }
 
     public int getX(){
@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Evaluates the options of wizard's offer concurrently on a fork-join pool
+ * Every candidate gets its own copy of the picked numbers (picked numbers plus the candidate),
+ * so the shared picked numbers are never mutated while searches run
+ * Results are compared in the order of the options, so the chosen number is the same as the one of a serial evaluation
+ * With a SearchCache the tree of the chosen candidate is left in the cache, the path walked after the pick is read from it
+ * With an OptionSearch every candidate is evaluated by one search over (node, candidate) states instead, if they fit in its budget,
+ * it leaves no tree behind, so Simulation creates no SearchCache then
+ * The pool is either its own or one shared by every simulation of a BatchRunner, a shared pool is not shut down
+ */
+public class OptionEvaluator {
+    private final Graph graph; // Graph of the map
+    private final Node[][] nodes; // 2-D Node array, only read while searches run
+    private final VisibilityLayer visibility; // Revealed flags of the nodes, only read while searches run
+    private final ForkJoinPool pool; // Pool that runs the searches
+    private final boolean isOwningPool; // True if the pool was created here, so shutdown stops it
+    private final ConcurrentLinkedQueue<SearchContext> contexts = new ConcurrentLinkedQueue<>(); // Idle search contexts, one is borrowed per search
+    private final SearchCache cache; // Cached search trees, null to search with the borrowed contexts
+    private final OptionSearch optionSearch; // Evaluates every candidate in one search, null to run one search per candidate
+
+
+    /**
+     * @param graph       Graph of the map
+     * @param nodes       2-D Node array that stores every node
+     * @param visibility  Revealed flags of the nodes
+     * @param parallelism Number of searches that can run at the same time
+     */
+    OptionEvaluator(Graph graph, Node[][] nodes, VisibilityLayer visibility, int parallelism) {
+        this(graph, nodes, visibility, parallelism, null, null);
+    }
+
+    /**
+     * @param graph       Graph of the map
+     * @param nodes       2-D Node array that stores every node
+     * @param visibility  Revealed flags of the nodes
+     * @param parallelism Number of searches that can run at the same time
+     * @param cache       Cached search trees shared with the planner, null for none
+     * @param optionSearch Search that evaluates every candidate at once, null to run one search per candidate
+     */
+    OptionEvaluator(Graph graph, Node[][] nodes, VisibilityLayer visibility, int parallelism, SearchCache cache, OptionSearch optionSearch) {
+        this(graph, nodes, visibility, new ForkJoinPool(parallelism), true, cache, optionSearch);
+    }
+
+    /**
+     * @param graph        Graph of the map
+     * @param nodes        2-D Node array that stores every node
+     * @param visibility   Revealed flags of the nodes
+     * @param pool         Pool shared with other evaluators, it is not shut down by this one
+     * @param cache        Cached search trees shared with the planner, null for none
+     * @param optionSearch Search that evaluates every candidate at once, null to run one search per candidate
+     */
+    OptionEvaluator(Graph graph, Node[][] nodes, VisibilityLayer visibility, ForkJoinPool pool, SearchCache cache, OptionSearch optionSearch) {
+        this(graph, nodes, visibility, pool, false, cache, optionSearch);
+    }
+
+    private OptionEvaluator(Graph graph, Node[][] nodes, VisibilityLayer visibility, ForkJoinPool pool, boolean isOwningPool,
+                            SearchCache cache, OptionSearch optionSearch) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.visibility = visibility;
+        this.pool = pool;
+        this.isOwningPool = isOwningPool;
+        this.cache = cache;
+        this.optionSearch = optionSearch;
+    }
+
+
+    /**
+     * Finds the option that gives the shortest path from startNode to objectiveNode when it is picked
+     * Options that were already picked are skipped, among the options with the same distance the last one wins
+     * @param startNode     Node where the traveler stands
+     * @param objectiveNode Node of the objective
+     * @param options       Numbers offered by the wizard
+     * @param pickedNumbers Numbers picked before, they must not change until this method returns
+     * @return the best pick, Integer.MAX_VALUE if every option was already picked
+     */
+    public int findBestPick(Node startNode, Node objectiveNode, ArrayList<Integer> options, IntSet pickedNumbers) {
+        ArrayList<Integer> candidates = new ArrayList<>(); // Options that are not picked yet, in the given order
+        for (int candidate : options) {
+            if (!pickedNumbers.contains(candidate)) // If candidate was already picked in previous steps, don't pick it, not efficient
+                candidates.add(candidate);
+        }
+        double[] distances = optionSearch != null && optionSearch.canSearch(candidates.size())
+                ? searchAtOnce(startNode, objectiveNode, candidates, pickedNumbers)
+                : searchEach(startNode, objectiveNode, candidates, pickedNumbers);
+
+        double minDistance = Double.MAX_VALUE; // Minimum distance of the various paths found so far, initially infinity
+        int bestPick = Integer.MAX_VALUE; // Best pick from the given options, initial value is not important
+        for (int i = 0; i < candidates.size(); i++) {
+            double currentDistance = distances[i];
+            if (currentDistance <= minDistance) { // If there is a shorter path, mark this pick as bestPick and change the minDistance of the path
+                minDistance = currentDistance;
+                bestPick = candidates.get(i);
+            }
+        }
+        return bestPick;
+    }
+
+    /**
+     * Runs one search per candidate on the pool, each candidate is treated as picked in its own search
+     * @return distance of each candidate in the given order
+     */
+    private double[] searchEach(Node startNode, Node objectiveNode, ArrayList<Integer> candidates, IntSet pickedNumbers) {
+        ArrayList<ForkJoinTask<Double>> tasks = new ArrayList<>(); // Distance of each candidate
+        for (int candidate : candidates) {
+            IntSet allowedTypes = new IntSet(pickedNumbers); // Candidate is treated as picked
+            allowedTypes.insert(candidate);
+            tasks.add(pool.submit(() -> distance(startNode, objectiveNode, allowedTypes)));
+        }
+        double[] distances = new double[candidates.size()];
+        for (int i = 0; i < distances.length; i++)
+            distances[i] = tasks.get(i).join();
+        return distances;
+    }
+
+    /**
+     * Evaluates every candidate with one OptionSearch, a candidate offered twice is searched once
+     * @return distance of each candidate in the given order
+     */
+    private double[] searchAtOnce(Node startNode, Node objectiveNode, ArrayList<Integer> candidates, IntSet pickedNumbers) {
+        IntSet seen = new IntSet();
+        int[] distinct = new int[candidates.size()];
+        int distinctCount = 0;
+        for (int candidate : candidates) {
+            if (seen.insert(candidate))
+                distinct[distinctCount++] = candidate;
+        }
+        double[] distinctDistances = optionSearch.findDistances(startNode, objectiveNode, Arrays.copyOf(distinct, distinctCount), pickedNumbers);
+        double[] distances = new double[candidates.size()];
+        for (int i = 0; i < distances.length; i++) {
+            int d = 0;
+            while (distinct[d] != candidates.get(i))
+                d++;
+            distances[i] = distinctDistances[d];
+        }
+        return distances;
+    }
+
+    /**
+     * Runs one search through the cache, or with a borrowed search context if there is not any
+     */
+    private double distance(Node startNode, Node objectiveNode, IntSet allowedTypes) {
+        if (cache != null)
+            return cache.findPath(startNode, objectiveNode, new ArrayList<>(), allowedTypes);
+        SearchContext context = contexts.poll();
+        if (context == null) // Every context is in use, create a new one (at most one per worker)
+            context = new SearchContext(graph.getRowCount(), graph.getColumnCount());
+        try {
+            return Main.dijkstra(startNode, objectiveNode, graph, nodes, visibility, new ArrayList<>(), allowedTypes, context);
+        } finally {
+            contexts.offer(context);
+        }
+    }
+
+    /**
+     * Stops the threads of the pool, unless it is a shared one
+     */
+    public void shutdown() {
+        if (isOwningPool)
+            pool.shutdown();
+    }
+
+}
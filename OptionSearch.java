@@ -0,0 +1,165 @@
+import java.util.Arrays;
+
+/**
+ * Finds the distance of every wizard's candidate with one Dijkstra search instead of one search per candidate
+ * The search runs over states (node, layer): layer 0 holds paths that only use nodes passable with the picked numbers,
+ * layer c+1 holds paths that entered at least one revealed node of candidate c, so they are only valid if c is picked
+ * A path moves from layer 0 to layer c+1 when it enters a revealed node of type c and stays there afterwards
+ * The distance of candidate c is the smaller one of (end, 0) and (end, c+1), it is exactly the distance a search with
+ * c picked finds, since both minimize the same sums over the same paths
+ * A state (node, c+1) is dropped when (node, 0) is at least as close, every path from (node, 0) is valid for c too,
+ * so a candidate layer only spreads where its candidate makes a path strictly shorter
+ * Layers of candidates that never meet one of their revealed nodes are never touched, so with no such node near the path
+ * the cost is close to a single search
+ * States are flat indexes layer*rowCount*columnCount + x*columnCount + y, so a SearchContext of layerCount*rowCount rows holds them
+ */
+public class OptionSearch {
+    private final Graph graph; // Graph of the map
+    private final VisibilityLayer visibility; // Revealed flags of the nodes
+    private final long budgetBytes; // Memory the states of a search may use
+    private final int nodeCount; // Number of nodes of the map, states of a layer
+
+    private SearchContext context; // Working arrays of the states, grown when more layers are needed
+    private int layerCount; // Number of layers the context has room for
+
+    private long expansions; // Number of states expanded by every search
+
+
+    /**
+     * @param graph       Graph of the map
+     * @param visibility  Revealed flags of the nodes
+     * @param budgetBytes Memory the states of a search may use, searches with more candidates are not run
+     */
+    OptionSearch(Graph graph, VisibilityLayer visibility, long budgetBytes) {
+        this.graph = graph;
+        this.visibility = visibility;
+        this.budgetBytes = budgetBytes;
+        this.nodeCount = graph.getRowCount() * graph.getColumnCount();
+    }
+
+
+    /**
+     * @param candidateCount Number of candidates to evaluate
+     * @return True if the states of that many candidates fit in the memory budget and their flat indexes fit in an int
+     */
+    public boolean canSearch(int candidateCount) {
+        long layerRows = (long) (candidateCount + 1) * graph.getRowCount(); // Rows of the context, computed in long as it can overflow
+        if (layerRows * graph.getColumnCount() > Integer.MAX_VALUE)
+            return false;
+        return SearchContext.estimateBytes((int) layerRows, graph.getColumnCount()) <= budgetBytes;
+    }
+
+    /**
+     * Finds the shortest distance from startNode to endNode for every candidate, as if only that candidate was added to
+     * the picked numbers
+     * @param startNode     Node where the traveler stands
+     * @param endNode       Node of the objective
+     * @param candidates    Distinct candidates that are not picked, canSearch must be true for their count
+     * @param pickedNumbers Numbers picked before, they must not change until this method returns
+     * @return distance of each candidate in the given order, Double.MAX_VALUE if endNode is not reachable with it
+     */
+    public double[] findDistances(Node startNode, Node endNode, int[] candidates, IntSet pickedNumbers) {
+        double[] distances = new double[candidates.length];
+        if (endNode == null) // Early terminate condition, same as Main.dijkstra
+            return distances;
+        Arrays.fill(distances, Double.MAX_VALUE);
+        ensureLayers(candidates.length + 1);
+        context.reset();
+
+        int startIndex = startNode.getX() * graph.getColumnCount() + startNode.getY(); // Flat index of the starting node, in layer 0
+        int endIndex = endNode.getX() * graph.getColumnCount() + endNode.getY(); // Flat index of the end node
+        IndexedMinHeap pq = context.getPriorityQueue();
+        pq.insert(startIndex, 0);
+        context.update(startIndex, 0, startIndex);
+        int remaining = candidates.length; // Candidate layers whose end state is not popped yet
+        long popped = 0, scanned = 0, relaxed = 0; // Counted for Metrics
+
+        while (!pq.isEmpty() && remaining > 0) {
+            int state = pq.deleteMin();
+            popped++;
+            int layer = state / nodeCount; // 0 if no candidate is used, otherwise index of the candidate plus one
+            int node = state - layer * nodeCount;
+            double currentWeight = context.getTotalWeight(state);
+            if (node == endIndex) {
+                if (layer == 0) { // Every candidate whose own end state is not popped has this distance
+                    for (int c = 0; c < candidates.length; c++) {
+                        if (distances[c] == Double.MAX_VALUE)
+                            distances[c] = currentWeight;
+                    }
+                    break;
+                }
+                distances[layer - 1] = currentWeight;
+                remaining--;
+                continue; // States of a finished layer do not change any distance
+            }
+            if (layer > 0 && (distances[layer - 1] != Double.MAX_VALUE || context.isVisited(node)))
+                continue; // Layer is finished, or the state is dominated by (node, 0)
+            context.markVisited(state);
+            expansions++;
+
+            int edgeEnd = graph.getEdgeEnd(node);
+            scanned += edgeEnd - graph.getEdgeStart(node);
+            for (int e = graph.getEdgeStart(node); e < edgeEnd; e++) {
+                int neighbour = graph.getTarget(e); // Flat index of the neighbour node
+                int nextLayer = layer; // Layer of the neighbour's state, -1 if it can not be entered
+                if (!Main.isPassable(graph, visibility, neighbour, pickedNumbers)) {
+                    int type = graph.getType(neighbour); // Blocked, so it is type 1 or a revealed type that is not picked
+                    if (type == 1)
+                        nextLayer = -1;
+                    else if (layer == 0)
+                        nextLayer = layerOf(type, candidates); // Enters the layer of its candidate, if it is one
+                    else if (candidates[layer - 1] != type)
+                        nextLayer = -1; // A path can only use one candidate
+                }
+                if (nextLayer < 0)
+                    continue;
+                int next = nextLayer * nodeCount + neighbour;
+                if (context.isVisited(next))
+                    continue;
+                double totalWeight = currentWeight + graph.getWeight(e);
+                if (nextLayer > 0 && totalWeight >= context.getTotalWeight(neighbour))
+                    continue; // (neighbour, 0) is at least as close
+                if (totalWeight < context.getTotalWeight(next)) {
+                    context.update(next, totalWeight, state);
+                    relaxed++;
+                    pq.insertOrDecrease(next, totalWeight);
+                }
+            }
+        }
+        Metrics.add(Metrics.Counter.SEARCHES, 1);
+        Metrics.add(Metrics.Counter.NODES_POPPED, popped);
+        Metrics.add(Metrics.Counter.EDGES_SCANNED, scanned);
+        Metrics.add(Metrics.Counter.EDGES_RELAXED, relaxed);
+        return distances;
+    }
+
+    /**
+     * @return layer of the candidate whose type is the given one, -1 if it is not a candidate
+     */
+    private static int layerOf(int type, int[] candidates) {
+        for (int c = 0; c < candidates.length; c++) {
+            if (candidates[c] == type)
+                return c + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces the context with a bigger one if it has room for fewer layers, a context is kept for the next searches
+     */
+    private void ensureLayers(int layers) {
+        if (layers <= layerCount)
+            return;
+        context = null; // Old arrays can be collected before the new ones are allocated
+        context = new SearchContext(layers * graph.getRowCount(), graph.getColumnCount());
+        layerCount = layers;
+    }
+
+    /**
+     * @return number of states expanded by every search so far
+     */
+    public long getExpansions() {
+        return expansions;
+    }
+
+}
@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Membership test of the nodes of the path the traveler is walking on, indexed by x*columnCount+y
+ * A node is on the path if its slot is stamped with the current epoch, so a new path is set in O(path length)
+ * without clearing the array or allocating anything
+ * Each node also keeps its step, the number of moves from the start of the path to it, so a blocked node can be told
+ * apart from the walked part of the path and the first blocked step of the remaining part can be reported
+ */
+public class PathIndex {
+    private final int columnCount; // Column count of the grid
+
+    private final int[] stamps; // Epoch in which each node was added to the path
+    private final int[] steps; // Step of each node on the path, valid only if its stamp is the current epoch
+
+    private int epoch; // Current epoch, every path starts with a new one
+    private int currentStep; // Step the traveler stands on, 0 is the node the path starts from
+    private int lastStep; // Step of the last node of the path
+
+
+    /**
+     * @param rowCount    Row count of the grid
+     * @param columnCount Column count of the grid
+     */
+    PathIndex(int rowCount, int columnCount) {
+        this.columnCount = columnCount;
+        stamps = new int[rowCount * columnCount];
+        steps = new int[rowCount * columnCount];
+        epoch = 1; // Stamps are 0 initially, so the path is empty
+    }
+
+
+    /**
+     * Replaces the current path with the given nodes, the traveler stands on step 0, before the first node of the path
+     * @param path Nodes of the new path in reverse order, the last one is step 1
+     */
+    public void setPath(ArrayList<Node> path) {
+        clear();
+        for (int i = 0; i < path.size(); i++) {
+            int node = path.get(i).getX() * columnCount + path.get(i).getY();
+            stamps[node] = epoch;
+            steps[node] = path.size() - i;
+        }
+        lastStep = path.size();
+    }
+
+    /**
+     * @param node flat index of the node to be added to the end of the path
+     */
+    public void add(int node) {
+        stamps[node] = epoch;
+        steps[node] = ++lastStep;
+    }
+
+    /**
+     * Moves the traveler one step forward on the path
+     */
+    public void advance() {
+        currentStep++;
+    }
+
+    /**
+     * @param node flat index of the node
+     * @return step of the node if it is on the part of the path the traveler has not walked yet, -1 otherwise
+     */
+    public int getRemainingStep(int node) {
+        return stamps[node] == epoch && steps[node] > currentStep ? steps[node] : -1;
+    }
+
+    /**
+     * @return step the traveler stands on
+     */
+    public int getCurrentStep() {
+        return currentStep;
+    }
+
+    /**
+     * @param node flat index of the node
+     * @return True if the node is on the path
+     */
+    public boolean contains(int node) {
+        return stamps[node] == epoch;
+    }
+
+    /**
+     * Empties the path in O(1) by moving to the next epoch
+     */
+    public void clear() {
+        epoch++;
+        currentStep = 0;
+        lastStep = 0;
+        if (epoch == Integer.MAX_VALUE) { // Stamps would overflow, clear them once and start over (practically never happens)
+            Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+
+/**
+ * Finds the paths the traveler walks on, Main selects the implementation with --planner=name
+ */
+public interface Planner {
+
+    /**
+     * Finds the shortest path from startingNode to endNode
+     * @param startingNode  Node where the traveler stands
+     * @param endNode       Node of the objective
+     * @param path          Shortest path is added to it in reverse order, from endNode back to the node after startingNode
+     * @param pickedNumbers Numbers picked from wizard's offer(they will be treated as type 0)
+     * @return total path distance of the shortest path, Double.MAX_VALUE if endNode is not reachable
+     */
+    double findPath(Node startingNode, Node endNode, ArrayList<Node> path, IntSet pickedNumbers);
+
+    /**
+     * Called when a new objective starts, picked numbers may have changed
+     */
+    default void reset() {
+    }
+
+    /**
+     * Called by the traveler when a node of type greater than 1 is revealed for the first time
+     * @param node flat index of the node
+     */
+    default void nodeRevealed(int node) {
+    }
+
+    /**
+     * @return number of nodes expanded by every search of this planner so far
+     */
+    long getExpansions();
+
+    /**
+     * @param name  Name of the planner: dijkstra, astar, dstar, bidirectional or hpa
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     * @return a new planner
+     */
+    static Planner create(String name, Graph graph, Node[][] nodes, VisibilityLayer visibility) {
+        return create(name, graph, nodes, visibility, null);
+    }
+
+    /**
+     * @param name  Name of the planner: dijkstra, astar, dstar, bidirectional or hpa
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     * @param cache Cached search trees, only Dijkstra uses them, null for none
+     * @return a new planner
+     */
+    static Planner create(String name, Graph graph, Node[][] nodes, VisibilityLayer visibility, SearchCache cache) {
+        return create(name, graph, nodes, visibility, cache, null);
+    }
+
+    /**
+     * @param name  Name of the planner: dijkstra, astar, dstar, bidirectional or hpa
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     * @param cache Cached search trees, only Dijkstra uses them, null for none
+     * @param landmarks Landmark lower bounds, only A* uses them, null for none
+     * @return a new planner
+     */
+    static Planner create(String name, Graph graph, Node[][] nodes, VisibilityLayer visibility, SearchCache cache, Landmarks landmarks) {
+        return create(name, graph, nodes, visibility, cache, landmarks, 0);
+    }
+
+    /**
+     * @param name  Name of the planner: dijkstra, astar, dstar, bidirectional or hpa
+     * @param graph Graph of the map
+     * @param nodes 2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     * @param cache Cached search trees, only Dijkstra uses them, null for none
+     * @param landmarks Landmark lower bounds, only A* uses them, null for none
+     * @param heapArity Arity of Dijkstra's priority queue (2, 4 or 8), 0 for the order of MinHeap<Pair>
+     * @return a new planner
+     */
+    static Planner create(String name, Graph graph, Node[][] nodes, VisibilityLayer visibility, SearchCache cache, Landmarks landmarks, int heapArity) {
+        switch (name) {
+            case "dijkstra":
+                return new DijkstraPlanner(graph, nodes, visibility, cache, heapArity);
+            case "astar":
+                return new AStarPlanner(graph, nodes, visibility, landmarks);
+            case "dstar":
+                return new DStarLitePlanner(graph, nodes, visibility);
+            case "bidirectional":
+                return new BidirectionalPlanner(graph, nodes, visibility);
+            case "hpa":
+                return new HierarchicalPlanner(graph, nodes, visibility);
+            default:
+                throw new IllegalArgumentException("Unknown planner: " + name);
+        }
+    }
+
+}
@@ -0,0 +1,331 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Repairs the last path around the nodes that blocked it instead of planning again from scratch
+ * The nodes at the end of the last path that are still passable form its valid tail, every node of it is an exit whose
+ * cost to the end is known, since reveals only block nodes and a part of a shortest path is a shortest path
+ * A* runs from the traveler inside a window around the rest of the last path, the first margin is at least the length of
+ * the blocked stretch, with Manhattan distance (or the landmark bound, if it is larger) to the end as heuristic, a path
+ * that reaches an exit costs its total weight plus the weights of the tail from there, added in path order like a search
+ * from scratch adds them
+ * The search stops when no node in the queue is within a rounding tolerance of the best exit, nodes outside the window are
+ * not expanded but the smallest distance + heuristic among them is kept: if it is above the best exit by more than the
+ * tolerance, no path through the rest of the grid is as short, otherwise the margin is doubled and the same search goes on,
+ * until the window is the whole grid
+ * Every node of a path within the tolerance of the best exit is settled then, so the repaired path is checked node by node:
+ * if a node can also be reached as cheaply from another settled neighbour, there is another shortest path and a search
+ * from scratch may take that one, the wrapped planner plans the path then, otherwise the repaired path is the only
+ * shortest path and is the one a search from scratch finds
+ * The proof needs every node below the best exit to be settled, so a repair expands about the nodes A* with the same
+ * heuristic expands, the Manhattan bound is weak on weighted maps and most repairs only end once the window is large
+ * The wrapped planner must return shortest paths, it plans the first path of every objective and the paths the search
+ * can not repair
+ */
+public class RepairingPlanner implements Planner {
+    private static final double TIE_TOLERANCE = 1e-9; // Relative difference under which two paths are taken as equal, far above rounding errors
+
+    private final Planner planner; // Planner of the paths that are not repaired
+    private final Graph graph; // Graph of the map
+    private final Node[][] nodes; // 2-D Node array that stores every node
+    private final VisibilityLayer visibility; // Revealed flags of the nodes, read by the searches
+    private final int rowCount; // Row count of the grid
+    private final int columnCount; // Column count of the grid
+    private final int windowMargin; // Nodes the first window extends beyond the last path at least
+    private final SearchContext context; // Working arrays of the window searches
+    private final double heuristicScale; // Cost of one unit of Manhattan distance at least
+    private final Landmarks landmarks; // Landmark lower bounds, null to use the Manhattan bound only
+    private double[] endDistances; // Distances of the end of the current repair to the landmarks
+
+    private final PathIndex lastPath; // Steps of the nodes of the last path, the node it started from is step 0
+    private ArrayList<Node> lastNodes; // Last path in reverse order, null if there is no path to repair
+    private double[] stepWeights; // stepWeights[step] is the weight of the edge of the last path from that step to the next one
+    private int lastStart; // Flat index of the node the last path started from
+    private int lastEnd = -1; // Flat index of the end node of the last path
+
+    private int[] border = new int[64]; // Nodes reached outside the window of the current repair, may repeat
+    private int borderCount; // Number of nodes in border
+    private int lowerX, upperX, lowerY, upperY; // Window of the current repair, inclusive
+
+    private long expansions; // Nodes expanded by the window searches
+
+
+    /**
+     * @param planner      Planner of the paths that are not repaired
+     * @param graph        Graph of the map
+     * @param nodes        2-D Node array that stores every node
+     * @param visibility   Revealed flags of the nodes
+     * @param windowMargin Nodes the first window extends beyond the last path at least
+     * @param landmarks    Landmark lower bounds of the map, null to use the Manhattan bound only
+     */
+    RepairingPlanner(Planner planner, Graph graph, Node[][] nodes, VisibilityLayer visibility, int windowMargin, Landmarks landmarks) {
+        this.planner = planner;
+        this.graph = graph;
+        this.nodes = nodes;
+        this.visibility = visibility;
+        this.rowCount = graph.getRowCount();
+        this.columnCount = graph.getColumnCount();
+        this.windowMargin = windowMargin;
+        this.landmarks = landmarks;
+        this.context = new SearchContext(rowCount, columnCount);
+        this.lastPath = new PathIndex(rowCount, columnCount);
+        // Slightly lowered so that rounding of the multiplication can not make the heuristic overestimate a sum of weights
+        this.heuristicScale = graph.getMinWeightPerStep() * (1 - 1e-9);
+    }
+
+
+    @Override
+    public double findPath(Node startingNode, Node endNode, ArrayList<Node> path, IntSet pickedNumbers) {
+        if (endNode == null) // Early terminate condition
+            return 0;
+        int start = startingNode.getX() * columnCount + startingNode.getY(); // Flat index of the starting node
+        int end = endNode.getX() * columnCount + endNode.getY(); // Flat index of the end node
+        int position = lastNodes == null || end != lastEnd ? -1 : start == lastStart ? 0 : lastPath.getRemainingStep(start);
+        if (position >= 0) { // Traveler is on the last path, it is repaired around the blocked nodes
+            double distance = repair(start, position, path, pickedNumbers);
+            if (distance >= 0) {
+                Metrics.add(Metrics.Counter.LOCAL_REPAIRS, 1);
+                remember(start, end, path, distance);
+                return distance;
+            }
+        }
+        double distance = planner.findPath(startingNode, endNode, path, pickedNumbers);
+        remember(start, end, path, distance);
+        return distance;
+    }
+
+    @Override
+    public void reset() {
+        planner.reset();
+        lastNodes = null; // Picked numbers may have changed, the tail of the last path may not be the shortest any more
+    }
+
+    @Override
+    public void nodeRevealed(int node) {
+        planner.nodeRevealed(node);
+    }
+
+    @Override
+    public long getExpansions() {
+        return planner.getExpansions() + expansions;
+    }
+
+
+    /**
+     * Runs A* from the traveler to the exits on the valid tail of the last path, inside a window whose margin is doubled
+     * until the result is proved, the last window is the whole grid
+     * Nodes reached over the border of the window keep their distance and join the search when the window grows, a node
+     * whose distance drops after it was expanded is expanded again, so the search is never started over
+     * @param start    flat index of the node where the traveler stands
+     * @param position step of the traveler on the last path
+     * @return total path distance of the repaired path, -1 if the end can not be reached through the tail (path is not changed)
+     */
+    private double repair(int start, int position, ArrayList<Node> path, IntSet pickedNumbers) {
+        int stepCount = lastNodes.size(); // Step of the end node
+        if (!Main.isPassable(graph, visibility, nodeOf(stepCount), pickedNumbers))
+            return -1; // End is blocked, there is no tail to rejoin
+        int tail = stepCount; // First step of the valid tail, every step after it is passable
+        while (tail > position + 1 && Main.isPassable(graph, visibility, nodeOf(tail - 1), pickedNumbers))
+            tail--;
+        if (tail == position + 1) // Nothing ahead is blocked, the traveler's node is an exit too
+            tail = position;
+        endDistances = landmarks != null ? landmarks.getDistances(lastEnd) : null;
+
+        context.reset();
+        IndexedMinHeap pq = context.getPriorityQueue();
+        pq.insert(start, heuristic(start));
+        context.update(start, 0, start);
+        borderCount = 0;
+        double best = Double.MAX_VALUE; // Total distance through the best exit found so far
+        double bound = Double.POSITIVE_INFINITY; // best with the tie tolerance, every node up to it is expanded
+        int bestExit = -1; // Flat index of that exit
+        // First margin is at least the length of the blocked stretch, a detour around it is about as wide
+        int margin = Math.max(windowMargin, tail - position);
+        boolean isWhole = false; // Last window is the whole grid, the search is a global one then
+        for (; ; margin = Math.min(2 * margin, rowCount + columnCount)) {
+            setWindow(position, stepCount, margin);
+            isWhole = lowerX == 0 && lowerY == 0 && upperX == rowCount - 1 && upperY == columnCount - 1;
+            int kept = 0; // Nodes still outside are moved to the front of border
+            for (int i = 0; i < borderCount; i++) { // Nodes inside the grown window join the search
+                if (isInWindow(border[i]))
+                    pq.insertOrDecrease(border[i], context.getTotalWeight(border[i]) + heuristic(border[i]));
+                else
+                    border[kept++] = border[i];
+            }
+            borderCount = kept;
+
+            while (!pq.isEmpty() && pq.getMinKey() <= bound) {
+                int current = pq.deleteMin();
+                double currentWeight = context.getTotalWeight(current);
+                context.markVisited(current);
+                expansions++;
+                int step = current == start ? position : lastPath.getRemainingStep(current);
+                if (step >= tail) {
+                    double total = costAlongTail(currentWeight, step);
+                    if (total < best) {
+                        best = total;
+                        bound = best + TIE_TOLERANCE * Math.max(1, best);
+                        bestExit = current;
+                    }
+                }
+                int edgeEnd = graph.getEdgeEnd(current);
+                for (int e = graph.getEdgeStart(current); e < edgeEnd; e++) {
+                    int neighbour = graph.getTarget(e);
+                    double totalWeight = currentWeight + graph.getWeight(e);
+                    if (totalWeight >= context.getTotalWeight(neighbour) || !Main.isPassable(graph, visibility, neighbour, pickedNumbers))
+                        continue;
+                    context.update(neighbour, totalWeight, current);
+                    if (isInWindow(neighbour))
+                        pq.insertOrDecrease(neighbour, totalWeight + heuristic(neighbour));
+                    else
+                        addBorder(neighbour); // Kept for a wider window
+                }
+            }
+
+            double leaving = Double.MAX_VALUE; // Smallest distance + heuristic of a node outside the window
+            for (int i = 0; i < borderCount; i++)
+                leaving = Math.min(leaving, context.getTotalWeight(border[i]) + heuristic(border[i]));
+            if (bestExit >= 0 && leaving > bound) // No path through the rest of the grid is as short
+                break;
+            if (isWhole)
+                return -1; // Only reached if the end is not reachable
+        }
+        if (isWhole)
+            Metrics.add(Metrics.Counter.REPAIR_FALLBACKS, 1);
+
+        int exitStep = bestExit == start ? position : lastPath.getRemainingStep(bestExit);
+        for (int i = 0; i < stepCount - exitStep; i++) // Tail after the exit, it is already in reverse order
+            path.add(lastNodes.get(i));
+        context.addPath(start, bestExit, nodes, path);
+        if (hasTie(start, path)) { // A search from scratch may take another path of the same cost
+            Metrics.add(Metrics.Counter.REPAIR_TIES, 1);
+            path.clear();
+            return -1;
+        }
+        return best;
+    }
+
+    /**
+     * Checks the repaired path node by node, every node must be settled and no other settled neighbour may reach it within
+     * the tie tolerance, such a neighbour is on another shortest path
+     * @param start flat index of the node where the traveler stands
+     * @param path  repaired path in reverse order
+     * @return true if a search from scratch may find another path of the same cost
+     */
+    private boolean hasTie(int start, ArrayList<Node> path) {
+        int previous = start;
+        double distance = 0; // Distance along the path, summed like a search from scratch sums it
+        for (int i = path.size() - 1; i >= 0; i--) {
+            int node = path.get(i).getX() * columnCount + path.get(i).getY();
+            distance += edgeWeight(previous, node);
+            if (!context.isVisited(node))
+                return true;
+            double limit = distance + TIE_TOLERANCE * Math.max(1, distance);
+            int edgeEnd = graph.getEdgeEnd(node);
+            for (int e = graph.getEdgeStart(node); e < edgeEnd; e++) { // Edges are the same in both directions
+                int neighbour = graph.getTarget(e);
+                if (neighbour != previous && context.isVisited(neighbour) && context.getTotalWeight(neighbour) + graph.getWeight(e) <= limit)
+                    return true;
+            }
+            previous = node;
+        }
+        return false;
+    }
+
+    /**
+     * @param weight Distance of the node at the given step of the tail
+     * @return total distance to the end along the tail, the weights are added in path order like a search from scratch adds them
+     */
+    private double costAlongTail(double weight, int step) {
+        for (int s = step; s < stepWeights.length; s++)
+            weight += stepWeights[s];
+        return weight;
+    }
+
+    /**
+     * Sets the window to the box around the steps of the last path between the given ones, grown by the margin
+     * @param first  first step in the window
+     * @param last   last step in the window
+     * @param margin nodes added on each side of the box
+     */
+    private void setWindow(int first, int last, int margin) {
+        lowerX = rowCount;
+        lowerY = columnCount;
+        upperX = upperY = -1;
+        for (int step = first; step <= last; step++) {
+            int node = nodeOf(step);
+            lowerX = Math.min(lowerX, node / columnCount);
+            upperX = Math.max(upperX, node / columnCount);
+            lowerY = Math.min(lowerY, node % columnCount);
+            upperY = Math.max(upperY, node % columnCount);
+        }
+        lowerX = Math.max(lowerX - margin, 0);
+        upperX = Math.min(upperX + margin, rowCount - 1);
+        lowerY = Math.max(lowerY - margin, 0);
+        upperY = Math.min(upperY + margin, columnCount - 1);
+    }
+
+    private void addBorder(int node) {
+        if (borderCount == border.length)
+            border = Arrays.copyOf(border, 2 * borderCount);
+        border[borderCount++] = node;
+    }
+
+    private boolean isInWindow(int node) {
+        int x = node / columnCount;
+        int y = node % columnCount;
+        return x >= lowerX && x <= upperX && y >= lowerY && y <= upperY;
+    }
+
+    /**
+     * Keeps the path so that the next plan can repair it, with the weight of every step
+     */
+    private void remember(int start, int end, ArrayList<Node> path, double distance) {
+        lastNodes = null;
+        if (distance == Double.MAX_VALUE || path.isEmpty() || path.get(0) != nodes[end / columnCount][end % columnCount])
+            return; // Unreachable, or a partial path that does not end at the end node
+        lastPath.setPath(path);
+        double[] weights = new double[path.size()];
+        int previous = start;
+        for (int step = 0; step < path.size(); step++) { // Edge from step to step + 1, path is in reverse order
+            Node node = path.get(path.size() - 1 - step);
+            int next = node.getX() * columnCount + node.getY();
+            weights[step] = edgeWeight(previous, next);
+            if (weights[step] < 0) // Not a path of the graph, do not repair it
+                return;
+            previous = next;
+        }
+        lastNodes = new ArrayList<>(path);
+        stepWeights = weights;
+        lastStart = start;
+        lastEnd = end;
+    }
+
+    /**
+     * @return flat index of the node at the given step of the last path
+     */
+    private int nodeOf(int step) {
+        if (step == 0)
+            return lastStart;
+        Node node = lastNodes.get(lastNodes.size() - step);
+        return node.getX() * columnCount + node.getY();
+    }
+
+    /**
+     * @return weight of the edge from one node to the other, -1 if there is not any
+     */
+    private double edgeWeight(int from, int to) {
+        int edgeEnd = graph.getEdgeEnd(from);
+        for (int e = graph.getEdgeStart(from); e < edgeEnd; e++) {
+            if (graph.getTarget(e) == to)
+                return graph.getWeight(e);
+        }
+        return -1;
+    }
+
+    private double heuristic(int node) {
+        double heuristic = heuristicScale * (Math.abs(node / columnCount - lastEnd / columnCount) + Math.abs(node % columnCount - lastEnd % columnCount));
+        return landmarks == null ? heuristic : Math.max(heuristic, landmarks.lowerBound(node, endDistances));
+    }
+
+}
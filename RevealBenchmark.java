@@ -0,0 +1,70 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares revealing by scanning the rectangle around the traveler with revealing by the circle stencil
+ * Both travelers take the same random walk on the same map, elapsed times are printed and revealed nodes are cross-checked
+ * Usage: java RevealBenchmark [nodeFile edgeFile [steps]]
+ */
+public class RevealBenchmark {
+    private static final int[] RADII = {20, 50, 200}; // Radii of sight that are measured
+
+
+    public static void main(String[] args) throws IOException {
+        File nodeFile = new File(args.length > 1 ? args[0] : "nodes-500-500.txt"); // File that stores node information
+        File edgeFile = new File(args.length > 1 ? args[1] : "edges-500-500.txt"); // File that stores edge information
+        int steps = args.length > 2 ? Integer.parseInt(args[2]) : 20000; // Length of the random walk
+
+        Graph graph = MappedMapLoader.load(nodeFile, edgeFile, Runtime.getRuntime().availableProcessors());
+        for (int radius : RADII) {
+            walk(graph, radius, steps, false); // Warm up both ways so that the JIT compiles them
+            walk(graph, radius, steps, true);
+            VisibilityLayer rectangleVisibility = new VisibilityLayer(graph.getRowCount(), graph.getColumnCount());
+            VisibilityLayer stencilVisibility = new VisibilityLayer(graph.getRowCount(), graph.getColumnCount());
+            long rectangle = walk(graph, rectangleVisibility, radius, steps, false);
+            long stencil = walk(graph, stencilVisibility, radius, steps, true);
+            if (!Arrays.equals(rectangleVisibility.snapshot(), stencilVisibility.snapshot()))
+                throw new IllegalStateException("Revealed nodes differ for radius " + radius);
+            System.out.printf("radius %3d: rectangle %8.3f us/step, stencil %8.3f us/step, %d nodes revealed%n",
+                    radius, rectangle / 1e3 / steps, stencil / 1e3 / steps, stencilVisibility.countRevealed());
+        }
+    }
+
+    private static long walk(Graph graph, int radius, int steps, boolean isStencilEnabled) {
+        return walk(graph, new VisibilityLayer(graph.getRowCount(), graph.getColumnCount()), radius, steps, isStencilEnabled);
+    }
+
+    /**
+     * Walks the traveler from the center of the map in random directions, it turns back at the borders
+     * Seed is fixed so that every walk visits the same nodes
+     * @return elapsed nanoseconds of the walk
+     */
+    private static long walk(Graph graph, VisibilityLayer visibility, int radius, int steps, boolean isStencilEnabled) {
+        int rowCount = graph.getRowCount();
+        int columnCount = graph.getColumnCount();
+        Random random = new Random(42);
+        Node[][] nodes = Main.createNodes(graph, visibility, false);
+        Traveler traveler = new Traveler(rowCount / 2, columnCount / 2, radius, graph, nodes, visibility);
+        traveler.setStencilEnabled(isStencilEnabled);
+        PathIndex path = new PathIndex(rowCount, columnCount); // Nothing is on the path, only revealing is measured
+        IntSet pickedNumbers = new IntSet();
+
+        long start = System.nanoTime();
+        traveler.revealNodes(path, pickedNumbers, "all");
+        for (int step = 0; step < steps; step++) {
+            int x = traveler.getX();
+            int y = traveler.getY();
+            switch (random.nextInt(4)) {
+                case 0: x = x + 1 < rowCount ? x + 1 : x - 1; break;
+                case 1: x = x > 0 ? x - 1 : x + 1; break;
+                case 2: y = y + 1 < columnCount ? y + 1 : y - 1; break;
+                default: y = y > 0 ? y - 1 : y + 1; break;
+            }
+            traveler.moveToNode(nodes[x][y], path, pickedNumbers);
+        }
+        return System.nanoTime() - start;
+    }
+
+}
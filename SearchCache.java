@@ -0,0 +1,198 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the shortest-path trees of recent Dijkstra searches so that searches from the same node with the same picked numbers
+ * are not started over, wizard's candidates and the path walked after the pick all search from the node the traveler stands on
+ * A tree is keyed by its source node and its picked numbers, a query whose end node is settled in the tree is answered from
+ * the previous nodes, otherwise the search of the tree continues from where it stopped until the end node is popped
+ * Reveals only make nodes impassable, so a tree stays valid until a revealed node blocks a node the tree has reached,
+ * such trees are dropped by nodeRevealed instead of stamping every key with a reveal epoch
+ * Trees are evicted in least recently used order, their count is bounded by the memory budget
+ * Contexts of evicted or dropped trees are kept for new searches only while the trees and the spare contexts together
+ * fit in the budget, so only the contexts of the searches running at the moment can be on top of it
+ */
+public class SearchCache {
+    private final Graph graph; // Graph of the map
+    private final Node[][] nodes; // 2-D Node array that stores every node, only used for the paths
+    private final VisibilityLayer visibility; // Revealed flags of the nodes, read by the searches
+    private final int capacity; // Maximum number of trees kept
+    private final int heapArity; // Arity of the priority queues of the trees, 0 for the order of MinHeap<Pair>
+
+    private final LinkedHashMap<Key, SearchContext> trees; // Cached trees in access order, the eldest is evicted first
+    private final ArrayDeque<SearchContext> spareContexts = new ArrayDeque<>(); // Contexts of evicted or dropped trees, reused by new searches
+    private SearchContext evicted; // Context of the tree evicted by the last put, guarded by this
+
+    private long expansions; // Nodes expanded by every search of this cache
+
+
+    /**
+     * @param graph       Graph of the map
+     * @param nodes       2-D Node array that stores every node
+     * @param visibility  Revealed flags of the nodes
+     * @param budgetBytes Memory the cached trees and spare contexts may use, no tree is kept if it is smaller than one tree
+     *                    (one spare context is still kept for the searches)
+     * @param heapArity   Arity of the priority queues of the trees (2, 4 or 8), 0 for the order of MinHeap<Pair>
+     */
+    SearchCache(Graph graph, Node[][] nodes, VisibilityLayer visibility, long budgetBytes, int heapArity) {
+        this.graph = graph;
+        this.heapArity = heapArity;
+        this.nodes = nodes;
+        this.visibility = visibility;
+        this.capacity = (int) Math.min(Integer.MAX_VALUE, budgetBytes / SearchContext.estimateBytes(graph.getRowCount(), graph.getColumnCount()));
+        this.trees = new LinkedHashMap<Key, SearchContext>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SearchContext> eldest) {
+                if (size() <= capacity)
+                    return false;
+                evicted = eldest.getValue(); // Released after the put, when the size is the final one
+                return true;
+            }
+        };
+    }
+
+
+    /**
+     * Finds the shortest path like Main.dijkstra, the path and its cost are the same as the ones of a new search
+     * Can be called by several threads at the same time, a tree is used by one search at a time
+     * @param startingNode  Node where the search starts
+     * @param endNode       Node of the objective
+     * @param path          Shortest path is added to it in reverse order, from endNode back to the node after startingNode
+     * @param pickedNumbers Numbers picked from wizard's offer, they must not change until this method returns
+     * @return total path distance of the shortest path, Double.MAX_VALUE if endNode is not reachable
+     */
+    public double findPath(Node startingNode, Node endNode, ArrayList<Node> path, IntSet pickedNumbers) {
+        if (endNode == null) // Early terminate condition, same as Main.dijkstra
+            return 0;
+        int startIndex = startingNode.getX() * graph.getColumnCount() + startingNode.getY(); // Flat index of the starting node
+        int endIndex = endNode.getX() * graph.getColumnCount() + endNode.getY(); // Flat index of the end node
+        Key key = new Key(startIndex, pickedNumbers.toArray());
+
+        SearchContext context = checkOut(key); // Tree of the key, taken out of the cache while it is searched
+        double distance;
+        long expanded = 0; // Nodes expanded by this search
+        if (context != null) {
+            if (context.isVisited(endIndex) || context.getPendingNode() == endIndex)
+                Metrics.add(Metrics.Counter.CACHE_HITS, 1);
+            else
+                Metrics.add(Metrics.Counter.CACHE_RESUMES, 1);
+            expanded -= context.getExpansions();
+            distance = Main.continueDijkstra(startIndex, endIndex, graph, nodes, visibility, path, pickedNumbers, context);
+        } else {
+            Metrics.add(Metrics.Counter.CACHE_MISSES, 1);
+            context = takeSpareContext();
+            expanded -= context.getExpansions();
+            distance = Main.dijkstra(startingNode, endNode, graph, nodes, visibility, path, pickedNumbers, context);
+        }
+        expanded += context.getExpansions();
+        checkIn(key, context, expanded);
+        return distance;
+    }
+
+    /**
+     * Drops the trees the revealed node makes invalid, the ones that reached the node without picking its type
+     * Must not be called while a search of this cache runs
+     * @param node flat index of the node revealed for the first time
+     */
+    public synchronized void nodeRevealed(int node) {
+        int type = graph.getType(node);
+        Iterator<Map.Entry<Key, SearchContext>> iterator = trees.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, SearchContext> entry = iterator.next();
+            if (Arrays.binarySearch(entry.getKey().pickedNumbers, type) < 0 && entry.getValue().isReached(node)) {
+                iterator.remove();
+                release(entry.getValue());
+                Metrics.add(Metrics.Counter.CACHE_INVALIDATIONS, 1);
+            }
+        }
+    }
+
+    /**
+     * @return Tree of the key removed from the cache, null if there is not any
+     */
+    private synchronized SearchContext checkOut(Key key) {
+        return trees.remove(key);
+    }
+
+    /**
+     * @return a context of an evicted tree, or a new one if there is not any
+     */
+    private synchronized SearchContext takeSpareContext() {
+        SearchContext context = spareContexts.poll();
+        if (context == null)
+            context = new SearchContext(graph.getRowCount(), graph.getColumnCount(), heapArity);
+        return context;
+    }
+
+    /**
+     * Puts the searched tree back, if another search of the same key was put back meanwhile, it is replaced
+     */
+    private synchronized void checkIn(Key key, SearchContext context, long expanded) {
+        expansions += expanded;
+        if (capacity == 0) {
+            release(context);
+            return;
+        }
+        SearchContext replaced = trees.put(key, context);
+        if (replaced != null)
+            release(replaced);
+        if (evicted != null) {
+            release(evicted);
+            evicted = null;
+        }
+    }
+
+    /**
+     * Keeps the context for a new search if the trees and the spare contexts stay within the budget, otherwise it is
+     * left to the garbage collector
+     */
+    private void release(SearchContext context) {
+        if (trees.size() + spareContexts.size() < Math.max(capacity, 1))
+            spareContexts.push(context);
+    }
+
+    /**
+     * @return number of nodes expanded by every search of this cache so far
+     */
+    public synchronized long getExpansions() {
+        return expansions;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    /**
+     * Source node and the sorted picked numbers of a tree
+     */
+    private static final class Key {
+        private final int source; // Flat index of the node the tree starts from
+        private final int[] pickedNumbers; // Picked numbers in ascending order
+        private final int hash; // Hash of both, computed once
+
+        Key(int source, int[] pickedNumbers) {
+            this.source = source;
+            this.pickedNumbers = pickedNumbers;
+            this.hash = 31 * source + Arrays.hashCode(pickedNumbers);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key))
+                return false;
+            Key key = (Key) other;
+            return source == key.source && Arrays.equals(pickedNumbers, key.pickedNumbers);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
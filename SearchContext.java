@@ -0,0 +1,190 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class holds the working arrays of Dijkstra's algorithm so that they can be shared by every search of a run
+ * Arrays are flat and indexed by x*columnCount+y, a node is identified by that index
+ * Instead of refilling the arrays before every search, each slot is stamped with the epoch it was written in,
+ * a slot whose stamp differs from the current epoch is treated as untouched (infinite distance, no previous node, not visited)
+ * The priority queue is an IndexedMinHeap, or with heap arity 0 a LazyMinHeap that extracts equal keys in the order of MinHeap<Pair>
+ */
+public class SearchContext {
+    private final int rowCount; // Row count of the grid
+    private final int columnCount; // Column count of the grid
+
+    private final double[] totalWeights; // Total weight to reach each node in the current search
+    private final int[] previousNode; // Index of the previous node of each node in the current search
+    private final int[] weightStamps; // Epoch in which totalWeights and previousNode slots were last written
+    private final int[] visitedStamps; // Epoch in which each node was visited
+
+    private final IndexedMinHeap priorityQueue; // Priority Queue that stores node indexes by their total weight, cleared before every search, null with arity 0
+    private final LazyMinHeap lazyQueue; // Priority Queue with duplicate entries used instead of priorityQueue with arity 0, null otherwise
+
+    private int epoch; // Current epoch, every search starts with a new one
+
+    private int pendingNode = -1; // Node extracted from the priority queue but not expanded, since the search stopped there, -1 if there is not any
+
+    private long expansions; // Number of nodes visited by every search of this context
+
+
+    /**
+     * @param rowCount    Row count of the grid
+     * @param columnCount Column count of the grid
+     */
+    SearchContext(int rowCount, int columnCount) {
+        this(rowCount, columnCount, 4);
+    }
+
+    /**
+     * @param rowCount    Row count of the grid
+     * @param columnCount Column count of the grid
+     * @param heapArity   Children count of every index of the priority queue (2, 4 or 8), 0 for a LazyMinHeap
+     */
+    SearchContext(int rowCount, int columnCount, int heapArity) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        int size = rowCount * columnCount;
+        totalWeights = new double[size];
+        previousNode = new int[size];
+        weightStamps = new int[size];
+        visitedStamps = new int[size];
+        priorityQueue = heapArity == 0 ? null : new IndexedMinHeap(size, heapArity);
+        lazyQueue = heapArity == 0 ? new LazyMinHeap(size) : null;
+        epoch = 0;
+    }
+
+
+    /**
+     * @param rowCount    Row count of the grid
+     * @param columnCount Column count of the grid
+     * @return Memory used by the arrays of a context of the given size, in bytes
+     */
+    public static long estimateBytes(int rowCount, int columnCount) {
+        // Weights, previous nodes and two stamp arrays of the context, heap, keys and positions of the priority queue
+        // (a LazyMinHeap starts with fewer bytes per node and grows only if the entries outnumber the nodes)
+        return (long) rowCount * columnCount * (8 + 4 + 4 + 4 + 4 + 8 + 4);
+    }
+
+    /**
+     * Starts a new search in O(1) by moving to the next epoch, every slot becomes untouched
+     * Only the elements left in the priority queue by the previous search are cleared
+     */
+    public void reset() {
+        if (priorityQueue != null)
+            priorityQueue.clear();
+        else
+            lazyQueue.clear();
+        pendingNode = -1;
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) { // Stamps would overflow, clear them once and start over (practically never happens)
+            Arrays.fill(weightStamps, 0);
+            Arrays.fill(visitedStamps, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * @param x X coordinate of the node
+     * @param y Y coordinate of the node
+     * @return flat index of the node
+     */
+    public int index(int x, int y) {
+        return x * columnCount + y;
+    }
+
+    /**
+     * @param index flat index of the node
+     * @return total weight to reach the node found so far, Double.MAX_VALUE if the node is not reached yet
+     */
+    public double getTotalWeight(int index) {
+        if (weightStamps[index] != epoch)
+            return Double.MAX_VALUE;
+        return totalWeights[index];
+    }
+
+    /**
+     * @param index flat index of the node
+     * @return flat index of the previous node on the shortest path found so far, -1 if there is not any
+     */
+    public int getPreviousNode(int index) {
+        if (weightStamps[index] != epoch)
+            return -1;
+        return previousNode[index];
+    }
+
+    /**
+     * Sets total weight and previous node of a node together
+     * @param index    flat index of the node
+     * @param weight   total weight to reach the node
+     * @param previous flat index of the previous node
+     */
+    public void update(int index, double weight, int previous) {
+        totalWeights[index] = weight;
+        previousNode[index] = previous;
+        weightStamps[index] = epoch;
+    }
+
+    /**
+     * @param index flat index of the node
+     * @return True if the current search has given the node a total weight, visited or still in the priority queue
+     */
+    public boolean isReached(int index) {
+        return weightStamps[index] == epoch;
+    }
+
+    public boolean isVisited(int index) {
+        return visitedStamps[index] == epoch;
+    }
+
+    public void markVisited(int index) {
+        visitedStamps[index] = epoch;
+        expansions++;
+    }
+
+    /**
+     * Adds the nodes of the path found by the current search to the list in reverse order, from end back to start (start excluded)
+     * If end is not reached, only end is added
+     * @param startIndex flat index of the start node
+     * @param endIndex   flat index of the end node
+     * @param nodes      2-D Node array that stores every node
+     * @param path       List to add the nodes to
+     */
+    public void addPath(int startIndex, int endIndex, Node[][] nodes, ArrayList<Node> path) {
+        int currentIndex = endIndex;
+        while (currentIndex != startIndex && currentIndex != -1) {
+            path.add(nodes[currentIndex / columnCount][currentIndex % columnCount]);
+            currentIndex = getPreviousNode(currentIndex);
+        }
+    }
+
+
+    // Getters
+    public IndexedMinHeap getPriorityQueue() {
+        return priorityQueue;
+    }
+
+    public LazyMinHeap getLazyQueue() {
+        return lazyQueue;
+    }
+
+    public long getExpansions() {
+        return expansions;
+    }
+
+    public int getPendingNode() {
+        return pendingNode;
+    }
+
+    public void setPendingNode(int pendingNode) {
+        this.pendingNode = pendingNode;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Precomputed shape of the circle of sight for a given radius, computed with integer squared distances only
+ * halfWidth[d] is the largest w such that d*d + w*w <= radius*radius, so row x+d of the circle around (x, y) spans [y-halfWidth, y+halfWidth]
+ * When the traveler moves one step, the circle gains exactly one cell per row (or column):
+ * moving right by one, row d of the new circle gains only the cell at offset +halfWidth[|d|] in the moving direction, the rest was already in sight
+ */
+public class SightStencil {
+    private final int radius; // Radius of the circle of sight
+    private final int[] halfWidth; // Half width of each row of the circle, indexed by the absolute row offset
+
+
+    /**
+     * @param radius Radius of the circle of sight
+     */
+    SightStencil(int radius) {
+        this.radius = radius;
+        halfWidth = new int[radius + 1];
+        long squaredRadius = (long) radius * radius;
+        int w = radius;
+        for (int d = 0; d <= radius; d++) {
+            while ((long) d * d + (long) w * w > squaredRadius) // Rows get narrower as d grows, so w only decreases
+                w--;
+            halfWidth[d] = w;
+        }
+    }
+
+
+    /**
+     * @param offset Row (or column) offset from the center, in [-radius, radius]
+     * @return half width of the circle at that offset
+     */
+    public int getHalfWidth(int offset) {
+        return halfWidth[Math.abs(offset)];
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+}
@@ -0,0 +1,339 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * One run of the traveler over the objectives of an objective file
+ * The graph is immutable and can be shared by any number of simulations running at the same time,
+ * everything the traveler changes (revealed flags, position, picked numbers, search state) is created per run
+ * That state can be written to a Checkpoint after every few objectives, and a run can resume from one
+ */
+public class Simulation {
+    private final Graph graph; // Graph of the map, only read
+    private final String plannerName; // Planner of the paths: dijkstra, astar, dstar or bidirectional
+    private final boolean isVerifying; // If true, every path cost is compared with Dijkstra's
+    private final int threadCount; // Number of searches that can evaluate wizard's options at the same time
+    private ForkJoinPool optionPool; // Pool of the option searches shared with other runs, null for a pool of threadCount per run
+
+    private long searchCacheBytes = 256L << 20; // Memory the cached search trees of a run may use
+    private long optionSearchBytes; // Memory the search that evaluates every wizard's candidate at once may use, 0 (default) searches each candidate
+    private Landmarks landmarks; // Landmark lower bounds of the map for A* and the repairs, null for none
+    private int heapArity; // Arity of Dijkstra's priority queue, 0 for the order of MinHeap<Pair>
+    private int repairWindow; // Margin of the first window of RepairingPlanner, 0 plans every path from scratch
+    private boolean isReplanningAtBlocker; // If true, the traveler walks the path up to the first blocked node before planning again
+    private File checkpointFile; // File the checkpoints of a run are written to, null for none
+    private int checkpointInterval; // Objectives reached between two checkpoints, 0 for none
+
+    private long expansions; // Nodes expanded by the planner in the last run
+    private long referenceExpansions; // Nodes expanded by Dijkstra for the same paths in the last run, if it is verifying
+
+
+    /**
+     * @param graph       Graph of the map, it is not modified
+     * @param plannerName Name of the planner: dijkstra, astar, dstar or bidirectional
+     * @param isVerifying If true, every path cost is checked against Dijkstra's
+     * @param threadCount Number of searches that can evaluate wizard's options at the same time
+     */
+    Simulation(Graph graph, String plannerName, boolean isVerifying, int threadCount) {
+        this.graph = graph;
+        this.plannerName = plannerName;
+        this.isVerifying = isVerifying;
+        this.threadCount = threadCount;
+    }
+
+
+    /**
+     * @param searchCacheBytes Memory the cached search trees of a run may use, 0 disables the cache
+     *                         It is only used when the option search is disabled, see setOptionSearchBytes
+     */
+    public void setSearchCacheBytes(long searchCacheBytes) {
+        this.searchCacheBytes = searchCacheBytes;
+    }
+
+    /**
+     * @param optionSearchBytes Memory the search that evaluates every candidate at once may use, 0 (default) runs one search
+     *                          per candidate, if it is not 0 the search cache is not used
+     */
+    public void setOptionSearchBytes(long optionSearchBytes) {
+        this.optionSearchBytes = optionSearchBytes;
+    }
+
+    /**
+     * @param optionPool Pool that evaluates wizard's options, shared by concurrent runs so they do not start threadCount
+     *                   threads each, it is not shut down by the run, null (default) for a pool of threadCount per run
+     */
+    public void setOptionPool(ForkJoinPool optionPool) {
+        this.optionPool = optionPool;
+    }
+
+    /**
+     * @param landmarks Landmark lower bounds of the map, shared by every run, null for none
+     */
+    public void setLandmarks(Landmarks landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * @param heapArity Arity of the IndexedMinHeap of the Dijkstra searches of the paths (2, 4 or 8), 0 (default) for a
+     *                  LazyMinHeap that pops nodes of equal weight in the order of MinHeap<Pair>, so the paths are the original ones
+     */
+    public void setHeapArity(int heapArity) {
+        this.heapArity = heapArity;
+    }
+
+    /**
+     * @param repairWindow Nodes the first repair window extends around the blockage, 0 plans every path from scratch
+     * @throws IllegalArgumentException if it is positive and the planner is hpa, the repairs need shortest paths to repair
+     */
+    public void setRepairWindow(int repairWindow) {
+        if (repairWindow > 0 && plannerName.equals("hpa"))
+            throw new IllegalArgumentException("--repair-window needs a planner of shortest paths, hpa paths are not");
+        this.repairWindow = repairWindow;
+    }
+
+    /**
+     * @param isReplanningAtBlocker True to keep walking the valid part of an invalid path and plan again from the node
+     *                              before its first blocked node, false to plan again as soon as the path is invalid
+     */
+    public void setReplanningAtBlocker(boolean isReplanningAtBlocker) {
+        this.isReplanningAtBlocker = isReplanningAtBlocker;
+    }
+
+    /**
+     * @param checkpointFile     File the checkpoints are written to, each one replaces the previous one
+     * @param checkpointInterval Objectives reached between two checkpoints, 0 writes none
+     */
+    public void setCheckpoint(File checkpointFile, int checkpointInterval) {
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Reads the objective file and walks the traveler through every objective, events are sent to the sink
+     * @param objectiveFile File that stores objective information
+     * @param events        Sink of the events, it is not closed
+     */
+    public void run(File objectiveFile, EventSink events) throws IOException {
+        run(objectiveFile, events, null);
+    }
+
+    /**
+     * Reads the objective file and walks the traveler through the objectives, events are sent to the sink
+     * @param objectiveFile File that stores objective information
+     * @param events        Sink of the events, it is not closed, if resuming it must continue the output of the checkpoint
+     * @param resume        Checkpoint of an earlier run over the same map and objective file to continue, null to start over,
+     *                      its inputs and options should be checked with Checkpoint.verify before the output is cut
+     */
+    public void run(File objectiveFile, EventSink events, Checkpoint resume) throws IOException {
+        long runStart = Metrics.start();
+        // Preparation for objectiveFile
+        Scanner reader = new Scanner(objectiveFile); // Scanner for the objective file
+
+        ArrayList<ArrayList<Integer>> objectives = new ArrayList<>(); // ArrayList of ArrayList of Integers to store objectives
+        // ArrayList<Integer> represents the x, y coordinates and options if exists
+        String line; // Stores each line of the file
+        String[] temp; // Stores the splitted version of each line
+        line = reader.nextLine(); // First line represents the radiusOfSight
+        int radius = Integer.parseInt(line);
+        line = reader.nextLine(); // Second line if the starting node
+        temp = line.split(" ");
+        int startingX = Integer.parseInt(temp[0]); // Initial x coordinate of the traveler
+        int startingY = Integer.parseInt(temp[1]); // Initial y coordinate of the traveler
+        while (reader.hasNextLine()){
+            line = reader.nextLine();
+            temp = line.split(" ");
+            ArrayList<Integer> arrList = new ArrayList<>(); // Current objectives
+            for (int i = 0; i < temp.length; i++){
+                arrList.add(Integer.parseInt(temp[i]));
+            }
+            objectives.add(arrList); // Add to objectives ArrayList
+        }
+        reader.close();
+        if (resume != null && (resume.getRowCount() != graph.getRowCount() || resume.getColumnCount() != graph.getColumnCount()
+                || resume.getRadius() != radius || resume.getNextObjective() > objectives.size()))
+            throw new IOException("Checkpoint does not belong to this map and objective file");
+        // Written into every checkpoint, the inputs do not change during the run
+        long inputHash = checkpointInterval > 0 ? Checkpoint.hashInputs(graph, objectiveFile) : 0;
+
+
+        VisibilityLayer visibility = new VisibilityLayer(graph.getRowCount(), graph.getColumnCount()); // Revealed flags of this traveler
+        Node[][] nodes = Main.createNodes(graph, visibility, false); // 2-D Node array that will store every node, connections are not needed
+        ArrayList<Integer> options = new ArrayList<>(); // ArrayList to transmit options from previous steps to current step
+
+        IntSet pickedNumbers = new IntSet(); // Set of numbers that was picked as an option before
+        int firstObjective = 0; // Index of the first objective to walk to
+        if (resume != null) { // Continue from the state at the checkpoint
+            visibility.restore(resume.getRevealed());
+            startingX = resume.getTravelerX();
+            startingY = resume.getTravelerY();
+            for (int number : resume.getPickedNumbers())
+                pickedNumbers.insert(number);
+            options = resume.getOptions();
+            firstObjective = resume.getNextObjective();
+        }
+        Traveler traveler = new Traveler(startingX, startingY, radius, graph, nodes, visibility); // Traveler starts from the specified starting node
+        traveler.setRemainingPathOnly(isReplanningAtBlocker); // By default a blocked node on the walked part makes the path invalid too
+
+        // Important! Before moving the traveler first call revealNodes method 1 time since initially traveler must see his sight
+        PathIndex pathIndex = new PathIndex(graph.getRowCount(), graph.getColumnCount()); // Nodes of the path the traveler is walking on
+        traveler.revealNodes(pathIndex, new IntSet(), "all"); // Sets are empty since there is no path yet, nothing new is revealed after a checkpoint
+
+        // Shortest-path trees of recent searches, the search after a pick continues the tree of the chosen candidate
+        // The option search leaves no tree of a candidate behind, so with it the cache would only hold trees that are never
+        // reused, it is kept only when every candidate is searched on its own
+        SearchCache searchCache = searchCacheBytes > 0 && optionSearchBytes == 0 ? new SearchCache(graph, nodes, visibility, searchCacheBytes, heapArity) : null;
+        OptionSearch optionSearch = optionSearchBytes > 0 ? new OptionSearch(graph, visibility, optionSearchBytes) : null; // One search for every candidate
+        OptionEvaluator optionEvaluator = optionPool != null // Evaluates wizard's options
+                ? new OptionEvaluator(graph, nodes, visibility, optionPool, searchCache, optionSearch)
+                : new OptionEvaluator(graph, nodes, visibility, threadCount, searchCache, optionSearch);
+
+        // Planner of the paths the traveler walks on, with verification every path cost is compared with Dijkstra's
+        Planner planner = Planner.create(plannerName, graph, nodes, visibility, searchCache, landmarks, heapArity);
+        if (repairWindow > 0) // Invalid paths are repaired around the blocked nodes when a window proves the repair
+            planner = new RepairingPlanner(planner, graph, nodes, visibility, repairWindow, landmarks);
+        VerifyingPlanner verifyingPlanner = null;
+        if (isVerifying){
+            // D* Lite promises Dijkstra's output, so its paths are compared node by node too
+            verifyingPlanner = new VerifyingPlanner(planner, graph, nodes, visibility, plannerName.equals("dstar"));
+            planner = verifyingPlanner;
+        }
+        Planner revealedPlanner = planner;
+        if (searchCache == null)
+            traveler.setRevealListener(revealedPlanner::nodeRevealed);
+        else
+            traveler.setRevealListener(node -> { // Trees that reached a newly blocked node are dropped too
+                revealedPlanner.nodeRevealed(node);
+                searchCache.nodeRevealed(node);
+            });
+
+        try {
+            int count = firstObjective + 1;
+            for (int index = firstObjective; index < objectives.size(); index++){ // While objectives ArrayList is not empty
+                ArrayList<Integer> currentObjective = objectives.get(index);
+                long objectiveStart = Metrics.start();
+                Node startNode = nodes[traveler.getX()][traveler.getY()]; // Starting node is the node where traveler stands currently
+
+
+                ArrayList<Integer> nextOptions = new ArrayList<>(); // Options to transmit to next iteration
+                for (int i = 2; i < currentObjective.size(); i++)
+                    nextOptions.add(currentObjective.get(i));
+                int objectiveX = currentObjective.get(0); // X coordinate of the current objective
+                int objectiveY = currentObjective.get(1); // Y coordinate of the current objective
+                Node objectiveNode = nodes[objectiveX][objectiveY]; // Objective node
+
+
+                // If there are options from previous steps, i.e, currently you want to pick a number from wizard's offer
+                if (!options.isEmpty()){
+                    long optionsStart = Metrics.start();
+                    int bestPick = optionEvaluator.findBestPick(startNode, objectiveNode, options, pickedNumbers); // Options are evaluated at once, or concurrently
+                    Metrics.stop(Metrics.Phase.OPTIONS, optionsStart);
+                    events.numberChosen(bestPick);
+                    pickedNumbers.insert(bestPick); // Mark this number as picked, now it will be treated as type 0
+                }
+                planner.reset(); // Objective and picked numbers change, search state can not be reused
+
+                // Continue until objective node is not reached
+                while (!(traveler.getX() == objectiveX && traveler.getY() == objectiveY)){
+                    startNode = nodes[traveler.getX()][traveler.getY()];
+                    ArrayList<Node> path = new ArrayList<>(); // Path to follow in this iteration
+                    long searchStart = Metrics.start();
+                    planner.findPath(startNode, objectiveNode, path, pickedNumbers); // Find the shortest path form startNode to objectiveNode
+                    Metrics.stop(Metrics.Phase.SEARCH, searchStart);
+                    pathIndex.setPath(path); // Mark the nodes of the path, previous path is forgotten
+
+
+                    // Start moving in the path (path is always given in reverse order from dijkstra, so iterate backwards)
+                    int blockedStep = -1; // First step of the path a reveal found blocked, -1 while the path is valid
+                    for (int i = path.size()-1; i >=0; i--){
+                        long moveStart = Metrics.start();
+                        boolean moveSuccessful = traveler.moveToNode(path.get(i), pathIndex, pickedNumbers); // Move to next node and reveal nodes immediately
+                        Metrics.stop(Metrics.Phase.REVEAL, moveStart);
+                        Metrics.add(Metrics.Counter.MOVES, 1);
+                        // If there is a node within the path that is unreachable, path is invalid
+                        if (!moveSuccessful && !isReplanningAtBlocker)
+                            blockedStep = 0; // Whole path is checked, it is planned again right away
+                        else if (!moveSuccessful && (blockedStep < 0 || traveler.getFirstInvalidStep() < blockedStep))
+                            blockedStep = traveler.getFirstInvalidStep();
+
+                        events.move(traveler.getX(), traveler.getY()); // "Moving to x-y"
+
+                        // Path is invalid, it is planned again now or, if enabled, when the next node is the blocked one
+                        if (blockedStep >= 0 && (!isReplanningAtBlocker || blockedStep == pathIndex.getCurrentStep() + 1)) {
+                            events.impassable();
+                            Metrics.add(Metrics.Counter.REPLANS, 1);
+                            break;
+                        }
+                    }
+                }
+                events.objectiveReached(count);
+                Metrics.add(Metrics.Counter.OBJECTIVES, 1);
+                Metrics.stop(Metrics.Phase.OBJECTIVE, objectiveStart);
+                count++;
+
+                options = nextOptions; // Prepare the options for the next iteration
+
+                if (checkpointInterval > 0 && (index + 1) % checkpointInterval == 0 && index + 1 < objectives.size())
+                    writeCheckpoint(index + 1, radius, inputHash, traveler, visibility, pickedNumbers, options, events);
+            }
+        } finally {
+            optionEvaluator.shutdown();
+        }
+
+        expansions = planner.getExpansions();
+        referenceExpansions = verifyingPlanner != null ? verifyingPlanner.getReferenceExpansions() : 0;
+        Metrics.add(Metrics.Counter.PLANNER_EXPANSIONS, expansions);
+        Metrics.stop(Metrics.Phase.SIMULATION, runStart);
+    }
+
+    /**
+     * Writes the state between two objectives, the events before it are flushed so the output can be continued
+     * @param nextObjective Index of the first objective that is not reached
+     * @param radius        Radius of sight of the run
+     * @param inputHash     Hash of the map and the objective file
+     */
+    private void writeCheckpoint(int nextObjective, int radius, long inputHash, Traveler traveler, VisibilityLayer visibility, IntSet pickedNumbers,
+                                 ArrayList<Integer> options, EventSink events) throws IOException {
+        long checkpointStart = Metrics.start();
+        int[] carried = new int[options.size()];
+        for (int i = 0; i < carried.length; i++)
+            carried[i] = options.get(i);
+        new Checkpoint(graph.getRowCount(), graph.getColumnCount(), nextObjective, traveler.getX(), traveler.getY(),
+                pickedNumbers.toArray(), carried, radius, events.checkpoint(), inputHash, getRunOptions(events.getFormat()),
+                visibility.snapshot()).write(checkpointFile);
+        Metrics.stop(Metrics.Phase.CHECKPOINT, checkpointStart);
+    }
+
+    /**
+     * Options of the run that change its output, a checkpoint records them and is only resumed by a run with the same ones
+     * Options that only change the speed (threads, caches, option search) are left out
+     * @param outputFormat Name of the encoding of the events
+     * @return the options as "name=value" pairs separated by spaces, always in the same order
+     */
+    public String getRunOptions(String outputFormat) {
+        return "planner=" + plannerName + " heap-arity=" + heapArity + " repair-window=" + repairWindow
+                + " landmarks=" + (landmarks != null ? landmarks.getLandmarkCount() : 0)
+                + " replan-at-blocker=" + isReplanningAtBlocker + " output-format=" + outputFormat;
+    }
+
+    /**
+     * @return number of nodes expanded by the planner in the last run
+     */
+    public long getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * @return number of nodes Dijkstra expanded for the same paths in the last run, 0 if it was not verifying
+     */
+    public long getReferenceExpansions() {
+        return referenceExpansions;
+    }
+
+    public String getPlannerName() {
+        return plannerName;
+    }
+
+}
@@ -0,0 +1,64 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes the events as the lines of output.txt: "Moving to x-y", "Path is impassable!", "Number n is chosen!", "Objective k reached!"
+ */
+public class TextEventSink extends ChannelEventSink {
+    private static final int MAX_LINE_LENGTH = 64; // Longest line an event can be encoded to
+
+    private static final byte[] MOVING_TO = ascii("Moving to ");
+    private static final byte[] IMPASSABLE = ascii("Path is impassable!\n");
+    private static final byte[] NUMBER = ascii("Number ");
+    private static final byte[] IS_CHOSEN = ascii(" is chosen!\n");
+    private static final byte[] OBJECTIVE = ascii("Objective ");
+    private static final byte[] REACHED = ascii(" reached!\n");
+
+
+    /**
+     * @param file         File to write the events, it is created or truncated
+     * @param resumeLength Length the file is cut to and continued from, 0 truncates it
+     */
+    TextEventSink(File file, long resumeLength) throws IOException {
+        super(file, resumeLength);
+    }
+
+
+    @Override
+    public String getFormat() {
+        return "text";
+    }
+
+    @Override
+    public void move(int x, int y) throws IOException {
+        ensureRemaining(MAX_LINE_LENGTH);
+        buffer.put(MOVING_TO);
+        putDecimal(x);
+        buffer.put((byte) '-');
+        putDecimal(y);
+        buffer.put((byte) '\n');
+    }
+
+    @Override
+    public void impassable() throws IOException {
+        ensureRemaining(MAX_LINE_LENGTH);
+        buffer.put(IMPASSABLE);
+    }
+
+    @Override
+    public void numberChosen(int number) throws IOException {
+        ensureRemaining(MAX_LINE_LENGTH);
+        buffer.put(NUMBER);
+        putDecimal(number);
+        buffer.put(IS_CHOSEN);
+    }
+
+    @Override
+    public void objectiveReached(int objective) throws IOException {
+        ensureRemaining(MAX_LINE_LENGTH);
+        buffer.put(OBJECTIVE);
+        putDecimal(objective);
+        buffer.put(REACHED);
+    }
+
+}
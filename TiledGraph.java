@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Graph that keeps only the recently used parts of a binary map in memory, for maps whose sections do not fit in the heap
+ * or in one mapping
+ * The grid is split into TILE_SIZE x TILE_SIZE tiles of primitive arrays (types, degrees, targets, weights), a tile is read
+ * from the file when one of its nodes is first used by a search or a reveal, and cold tiles are evicted when the loaded
+ * tiles exceed the memory budget
+ * Eviction is CLOCK: every access marks its tile, the eviction scan gives marked tiles a second chance and evicts the first
+ * unmarked one, which approximates least recently used without any bookkeeping on the hot path
+ * Edge indexes are node*maxDegree + k, so an edge is resolved to its tile without knowing the offsets of other tiles
+ * Tiles are immutable, a search that still holds an evicted tile keeps reading it safely, so the graph can be shared by threads
+ * Only the storage of the map is tiled, every run still keeps its own per-node state (Node objects, revealed flags, path
+ * index, search arrays), so the largest map a run handles is bounded by that state and not by this graph
+ * Making that state sparse is still open, this class only removes the map itself from the bound
+ */
+public class TiledGraph implements Graph {
+    private static final int TILE_SHIFT = 6; // Tiles are 64x64 nodes
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int MIN_TILES = 64; // Budget always holds this many tiles, and the tiles of the border of the grid twice
+
+    private final FileChannel channel; // Binary map file, read with positional reads
+    private final int rowCount; // Row count of the grid
+    private final int columnCount; // Column count of the grid
+    private final int typeWidth; // Bytes of a type in the file, 1 or 4
+    private final long typesStart; // Position of the types section
+    private final long offsetsStart; // Position of the offsets section
+    private final long targetsStart; // Position of the targets section
+    private final long weightsStart; // Position of the weights section
+    private final long checksum; // CRC32 of the file after its header, as written in the header, identifies the map without reading it
+    private final int maxDegree; // Maximum edge count of a node, edge indexes are node*maxDegree + k
+    private final int tileColumns; // Number of tiles in a row of tiles
+    private final long budgetBytes; // Memory the loaded tiles may use, never less than the minimum of the constructor
+
+    private final AtomicReferenceArray<Tile> tiles; // Loaded tile of each tile index, null if it is not loaded
+    private final ArrayDeque<Integer> clock = new ArrayDeque<>(); // Loaded tile indexes in scan order, guarded by this
+    private long loadedBytes; // Memory used by the loaded tiles, guarded by this
+    private ByteBuffer scratch = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN); // Read buffer, guarded by this
+    private final double[] scratchWeights; // Weights of the tile being read, copied into the tile only if they are not uniform, guarded by this
+
+    private volatile double minWeightPerStep = -1; // Scale of the Manhattan heuristic, computed on first use since it reads every edge
+
+
+    /**
+     * @param channel      Binary map file, it must stay open while the graph is used
+     * @param rowCount     Row count of the grid
+     * @param columnCount  Column count of the grid
+     * @param typeWidth    Bytes of a type in the file
+     * @param typesStart   Position of the types section
+     * @param offsetsStart Position of the offsets section
+     * @param targetsStart Position of the targets section
+     * @param weightsStart Position of the weights section
+     * @param checksum     Checksum of the header of the file, it is not verified
+     * @param budgetBytes  Memory the loaded tiles may use, it is raised if it can not hold the front of a search
+     * @throws IOException if the offsets can not be read or edge indexes would not fit in an int
+     */
+    TiledGraph(FileChannel channel, int rowCount, int columnCount, int typeWidth, long typesStart, long offsetsStart,
+               long targetsStart, long weightsStart, long checksum, long budgetBytes) throws IOException {
+        this.channel = channel;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.typeWidth = typeWidth;
+        this.typesStart = typesStart;
+        this.offsetsStart = offsetsStart;
+        this.targetsStart = targetsStart;
+        this.weightsStart = weightsStart;
+        this.checksum = checksum;
+        this.maxDegree = readMaxDegree();
+        if ((long) rowCount * columnCount * maxDegree > Integer.MAX_VALUE)
+            throw new IOException("Map of " + rowCount + "x" + columnCount + " nodes with degree " + maxDegree + " is too large for int edge indexes");
+        this.scratchWeights = new double[TILE_SIZE * TILE_SIZE * maxDegree];
+        this.tileColumns = (columnCount + TILE_MASK) >>> TILE_SHIFT;
+        int tileRows = (rowCount + TILE_MASK) >>> TILE_SHIFT;
+        this.tiles = new AtomicReferenceArray<>(tileRows * tileColumns);
+        // The front of a search that crosses the map touches about as many tiles as the border of the grid has, with a
+        // smaller budget the tiles it still crosses are evicted and read again on almost every step
+        long minTiles = Math.max(MIN_TILES, 2L * (tileRows + tileColumns));
+        this.budgetBytes = Math.max(budgetBytes, minTiles * Tile.estimateBytes(typeWidth, maxDegree, true));
+    }
+
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public int getType(int node) {
+        int x = node / columnCount;
+        int y = node - x * columnCount;
+        Tile tile = tile(x, y);
+        return tile.types != null ? tile.types[local(x, y)] : tile.wideTypes[local(x, y)];
+    }
+
+    @Override
+    public int getEdgeStart(int node) {
+        return node * maxDegree;
+    }
+
+    @Override
+    public int getEdgeEnd(int node) {
+        int x = node / columnCount;
+        int y = node - x * columnCount;
+        return node * maxDegree + tile(x, y).degrees[local(x, y)];
+    }
+
+    @Override
+    public int getTarget(int edge) {
+        int node = edge / maxDegree;
+        int x = node / columnCount;
+        int y = node - x * columnCount;
+        return tile(x, y).targets[local(x, y) * maxDegree + edge - node * maxDegree];
+    }
+
+    @Override
+    public double getWeight(int edge) {
+        int node = edge / maxDegree;
+        int x = node / columnCount;
+        int y = node - x * columnCount;
+        Tile tile = tile(x, y);
+        if (tile.weights == null) // Every edge of the tile has the same weight
+            return tile.uniformWeight;
+        return tile.weights[local(x, y) * maxDegree + edge - node * maxDegree];
+    }
+
+    @Override
+    public double getMinWeightPerStep() {
+        if (minWeightPerStep < 0)
+            minWeightPerStep = Graph.computeMinWeightPerStep(this);
+        return minWeightPerStep;
+    }
+
+    /**
+     * @return CRC32 of the binary map after its header, read from the header, so no tile is loaded
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return number of tiles in memory
+     */
+    public synchronized int getLoadedTileCount() {
+        return clock.size();
+    }
+
+    /**
+     * @return memory used by the tiles in memory, in bytes
+     */
+    public synchronized long getLoadedBytes() {
+        return loadedBytes;
+    }
+
+
+    /**
+     * @return tile of the node, it is loaded if it is not in memory
+     */
+    private Tile tile(int x, int y) {
+        int index = (x >>> TILE_SHIFT) * tileColumns + (y >>> TILE_SHIFT);
+        Tile tile = tiles.get(index);
+        if (tile == null)
+            tile = load(index);
+        if (!tile.referenced) // Plain racy write, only done once per scan, a lost mark only costs the tile its second chance
+            tile.referenced = true;
+        return tile;
+    }
+
+    /**
+     * @return index of the node inside its tile
+     */
+    private static int local(int x, int y) {
+        return ((x & TILE_MASK) << TILE_SHIFT) | (y & TILE_MASK);
+    }
+
+    /**
+     * Reads the tile from the file and evicts unmarked tiles until the loaded tiles fit in the budget
+     */
+    private synchronized Tile load(int index) {
+        Tile tile = tiles.get(index);
+        if (tile != null) // Another thread loaded it meanwhile
+            return tile;
+        try {
+            tile = readTile(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read tile " + index + " of the binary map", e);
+        }
+        while (loadedBytes + tile.bytes > budgetBytes && !clock.isEmpty()) {
+            int candidate = clock.poll();
+            Tile loaded = tiles.get(candidate);
+            if (loaded.referenced) { // Used since the last scan, give it a second chance
+                loaded.referenced = false;
+                clock.add(candidate);
+                continue;
+            }
+            tiles.set(candidate, null);
+            loadedBytes -= loaded.bytes;
+            Metrics.add(Metrics.Counter.TILE_EVICTIONS, 1);
+        }
+        tiles.set(index, tile);
+        clock.add(index);
+        loadedBytes += tile.bytes;
+        Metrics.add(Metrics.Counter.TILE_LOADS, 1);
+        return tile;
+    }
+
+    /**
+     * Reads the types, offsets and edges of every row of the tile, a row of a tile is contiguous in every section
+     */
+    private Tile readTile(int index) throws IOException {
+        int firstX = (index / tileColumns) << TILE_SHIFT;
+        int firstY = (index % tileColumns) << TILE_SHIFT;
+        int width = Math.min(TILE_SIZE, columnCount - firstY); // Nodes of a row of the tile
+        Tile tile = new Tile(typeWidth, maxDegree);
+        double uniformWeight = Double.NaN; // Weight of every edge read so far if they are all the same, NaN before the first edge
+        boolean isUniform = true;
+        for (int x = firstX; x < Math.min(firstX + TILE_SIZE, rowCount); x++) {
+            long first = (long) x * columnCount + firstY; // Flat index of the first node of the row
+            ByteBuffer types = read(typesStart + first * typeWidth, width * typeWidth);
+            for (int i = 0; i < width; i++) {
+                if (typeWidth == 1)
+                    tile.types[local(x, firstY + i)] = types.get();
+                else
+                    tile.wideTypes[local(x, firstY + i)] = types.getInt();
+            }
+
+            ByteBuffer offsets = read(offsetsStart + first * 4, (width + 1) * 4);
+            int[] offset = new int[width + 1];
+            for (int i = 0; i <= width; i++)
+                offset[i] = offsets.getInt();
+            int edgeCount = offset[width] - offset[0];
+            ByteBuffer targets = read(targetsStart + (long) offset[0] * 4, edgeCount * 4);
+            int[] rowTargets = new int[edgeCount];
+            for (int e = 0; e < edgeCount; e++)
+                rowTargets[e] = targets.getInt();
+            ByteBuffer weights = read(weightsStart + (long) offset[0] * 8, edgeCount * 8);
+            for (int i = 0; i < width; i++) {
+                int slot = local(x, firstY + i) * maxDegree;
+                tile.degrees[local(x, firstY + i)] = (byte) (offset[i + 1] - offset[i]);
+                for (int e = offset[i] - offset[0]; e < offset[i + 1] - offset[0]; e++, slot++) {
+                    double weight = weights.getDouble();
+                    tile.targets[slot] = rowTargets[e];
+                    scratchWeights[slot] = weight;
+                    if (Double.isNaN(uniformWeight))
+                        uniformWeight = weight;
+                    else if (weight != uniformWeight)
+                        isUniform = false;
+                }
+            }
+        }
+        if (isUniform) // Plain regions have one weight, they need no array
+            tile.uniformWeight = uniformWeight;
+        else
+            tile.weights = scratchWeights.clone();
+        tile.bytes = Tile.estimateBytes(typeWidth, maxDegree, tile.weights != null);
+        return tile;
+    }
+
+    /**
+     * Reads bytes of the file into the scratch buffer, it is valid until the next read
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        if (scratch.capacity() < length)
+            scratch = ByteBuffer.allocateDirect(Integer.highestOneBit(length) << 1).order(ByteOrder.LITTLE_ENDIAN);
+        scratch.clear().limit(length);
+        BinaryMap.readFully(channel, scratch, position);
+        return scratch;
+    }
+
+    /**
+     * Streams the offsets section once to find the maximum degree, it fixes the layout of the edge indexes
+     */
+    private int readMaxDegree() throws IOException {
+        long nodeCount = (long) rowCount * columnCount;
+        int max = 0;
+        int previous = 0; // offsets[0] is 0
+        for (long node = 1; node <= nodeCount; ) {
+            int count = (int) Math.min(nodeCount + 1 - node, scratch.capacity() / 4);
+            ByteBuffer offsets = read(offsetsStart + node * 4, count * 4);
+            for (int i = 0; i < count; i++) {
+                int offset = offsets.getInt();
+                max = Math.max(max, offset - previous);
+                previous = offset;
+            }
+            node += count;
+        }
+        if (max > Byte.MAX_VALUE)
+            throw new IOException("Node degree " + max + " is too large for a tiled graph");
+        return max;
+    }
+
+
+    /**
+     * Nodes of one tile, indexed by (x & TILE_MASK) << TILE_SHIFT | (y & TILE_MASK), edges of a node are in maxDegree slots
+     * Nodes outside the grid (tiles on the last row or column) stay zero
+     */
+    private static final class Tile {
+        final byte[] types; // Type of each node if types are 1 byte in the file, null otherwise
+        final int[] wideTypes; // Type of each node if types are 4 bytes in the file, null otherwise
+        final byte[] degrees = new byte[TILE_SIZE * TILE_SIZE]; // Edge count of each node
+        final int[] targets; // Node each edge goes to
+        double[] weights; // Weight of each edge, null if every edge of the tile has uniformWeight
+        double uniformWeight; // Weight of every edge if weights is null
+        long bytes; // Memory used by the arrays
+        boolean referenced = true; // Set on access, cleared by the eviction scan
+
+        Tile(int typeWidth, int maxDegree) {
+            types = typeWidth == 1 ? new byte[TILE_SIZE * TILE_SIZE] : null;
+            wideTypes = typeWidth == 1 ? null : new int[TILE_SIZE * TILE_SIZE];
+            targets = new int[TILE_SIZE * TILE_SIZE * maxDegree];
+        }
+
+        /**
+         * @return memory used by the arrays of a tile
+         */
+        static long estimateBytes(int typeWidth, int maxDegree, boolean hasWeights) {
+            long slots = (long) TILE_SIZE * TILE_SIZE;
+            return slots * typeWidth + slots + 4L * slots * maxDegree + (hasWeights ? 8L * slots * maxDegree : 0) + 64;
+        }
+    }
+
+}
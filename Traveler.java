@@ -1,4 +1,6 @@
 
+import java.util.function.IntConsumer;
+
 /**
  * This class represents the traveler who walks in the map through the process
  */
@@ -9,25 +11,45 @@ public class Traveler {
     private final int rowCount; // Row count of the grid
     private final int columnCount; // Column count of the grid
 
+    private final Graph graph; // Graph of the map, types are read from it
     private final Node[][] nodes; // 2-D node array, it will be passed to this class from Main via constructor
+    private final VisibilityLayer visibility; // Revealed flags of the nodes
 
     private int x; // Current X coordinate of the traveler
     private int y; // Current Y coordinate of the traveler
 
+    private final SightStencil stencil; // Shape of the circle of sight, every reveal walks it instead of testing distances
+
+    private boolean isSightComplete; // True if every node of type greater than 1 in the circle of sight is revealed
+    // It is set by the initial reveal and kept by every step, then a step only needs the cells that enter the circle
+
+    private boolean isStencilEnabled = true; // If false, every reveal scans the rectangle around the traveler like before
+
+    private boolean isRemainingPathOnly; // If true, only the part of the path not walked yet can make it invalid
+    private int firstInvalidStep = -1; // Step of the first node of the remaining path the last reveal found blocked, -1 if none
+
+    private IntConsumer revealListener; // Notified with the flat index of every node of type greater than 1 revealed for the first time
+
 
     /**
      * @param initialX      Initial X position of the traveler
      * @param initialY      Initial Y position of the traveler
      * @param radiusOfSight Sight restriction of the traveler
+     * @param graph         Graph of the map
      * @param nodes         2-D Node array that stores every node
+     * @param visibility    Revealed flags of the nodes
      */
-    Traveler(int initialX, int initialY, int radiusOfSight, Node[][] nodes) {
+    Traveler(int initialX, int initialY, int radiusOfSight, Graph graph, Node[][] nodes, VisibilityLayer visibility) {
         this.x = initialX;
         this.y = initialY;
         this.radiusOfSight = radiusOfSight;
-        this.rowCount = nodes.length;
-        this.columnCount = nodes[0].length;
+        this.rowCount = graph.getRowCount();
+        this.columnCount = graph.getColumnCount();
+        this.graph = graph;
         this.nodes = nodes;
+        this.visibility = visibility;
+        this.stencil = new SightStencil(radiusOfSight);
+        this.isSightComplete = false;
     }
 
 
@@ -39,22 +61,52 @@ public class Traveler {
         return y;
     }
 
+    /**
+     * @return step of the first node of the remaining path that the last reveal found blocked, -1 if it found none
+     * Steps are counted by the PathIndex, the traveler can walk the path up to the step before it
+     * Only kept if the remaining path only is checked
+     */
+    public int getFirstInvalidStep() {
+        return firstInvalidStep;
+    }
+
+    /**
+     * @param revealListener Listener to notify when a node of type greater than 1 is revealed for the first time, null for none
+     */
+    public void setRevealListener(IntConsumer revealListener) {
+        this.revealListener = revealListener;
+    }
+
+    /**
+     * @param isRemainingPathOnly True to check only the part of the path not walked yet and keep its first blocked step,
+     *                            false to treat a blocked node anywhere on the path (walked ones too) as invalid like before
+     */
+    public void setRemainingPathOnly(boolean isRemainingPathOnly) {
+        this.isRemainingPathOnly = isRemainingPathOnly;
+    }
+
+    /**
+     * @param isStencilEnabled False to reveal by scanning the rectangle around the traveler, used to compare both ways
+     */
+    public void setStencilEnabled(boolean isStencilEnabled) {
+        this.isStencilEnabled = isStencilEnabled;
+    }
+
     /**
      * Moves the traveler to the specified node (traveler never moves to a node with jumps, it is next to him)
      *
      * @param targetNode     Node the traveler is moving to
      * @param path    Current path we are moving on
-     * @param arr            Used a string array to transfer a message from this class to Main since the files are in Main
      * @return If after the move, we encountered an unreachable node that is in our path, return false, true otherwise
      */
-    public boolean moveToNode(Node targetNode, MyHashSet<Node> path, String[] arr, MyHashSet<Integer> pickedNumbers) {
+    public boolean moveToNode(Node targetNode, PathIndex path, IntSet pickedNumbers) {
         int targetX = targetNode.getX();
         int targetY = targetNode.getY();
         int moveX = targetX - x;
         int moveY = targetY - y;
         x = targetX;
         y = targetY;
-        arr[0] = "Moving to " + x + "-" + y;
+        path.advance(); // Target is walked now, only the nodes after it can make the path invalid
         if (moveX == 1 && moveY == 0)
             return revealNodes(path, pickedNumbers, "R");
         else if (moveX == -1 && moveY == 0)
@@ -64,16 +116,95 @@ public class Traveler {
         else if (moveX == 0 && moveY == -1)
             return revealNodes(path, pickedNumbers, "D");
 
+        isSightComplete = false; // Nothing is revealed after a jump, next steps can not rely on the previous circle
         return true; // Code never reaches here since traveler can not move more than 1 squares in each move
     }
 
+    /**
+     * Reveals the nodes that are in sight after the traveler arrived at the current node with the given move
+     * With option "all" the whole circle is revealed, otherwise only the cells that entered the circle with the move,
+     * one per row (or column) of the precomputed stencil, since the rest of the circle was revealed before
+     * If the circle of the previous node was not complete (after a jump), the half circle in the moving direction is scanned instead
+     * @param path nodes in the path currently the traveler is walking on
+     * @param option "all", or the move that brought the traveler here: "R", "L", "U" or "D"
+     * @return True if there aren't any problems throughout the seen part of the path, False otherwise
+     */
+    public boolean revealNodes(PathIndex path, IntSet pickedNumbers, String option) {
+        firstInvalidStep = -1;
+        if (!isStencilEnabled)
+            return scanSightRectangle(path, pickedNumbers, option);
+        if (option.equals("all")) {
+            isSightComplete = true;
+            return revealCircle(path, pickedNumbers);
+        }
+        if (!isSightComplete)
+            return scanSightRectangle(path, pickedNumbers, option);
+
+        boolean isPathValid = true; // Initially we treat the path like it is valid
+        boolean horizontal = option.equals("R") || option.equals("L"); // Move changes x, so every row offset gains one cell
+        int sign = option.equals("R") || option.equals("U") ? 1 : -1; // New cells are on the moving side
+        for (int d = -radiusOfSight; d <= radiusOfSight; d++) {
+            int edge = sign * stencil.getHalfWidth(d); // Offset of the new cell in the moving direction
+            int i = horizontal ? x + edge : x + d;
+            int j = horizontal ? y + d : y + edge;
+            if (i >= 0 && i < rowCount && j >= 0 && j < columnCount && !revealNode(i, j, path, pickedNumbers))
+                isPathValid = false;
+        }
+        Metrics.add(Metrics.Counter.REVEAL_CELLS, 2 * radiusOfSight + 1);
+        return isPathValid;
+    }
+
+    /**
+     * Reveals the whole circle row by row, each row is a span of the stencil clipped to the grid
+     * @return True if none of the revealed nodes makes the path invalid
+     */
+    private boolean revealCircle(PathIndex path, IntSet pickedNumbers) {
+        boolean isPathValid = true;
+        for (int d = Math.max(-radiusOfSight, -x); d <= radiusOfSight && x + d < rowCount; d++) {
+            int width = stencil.getHalfWidth(d);
+            int lower = Math.max(y - width, 0);
+            int upper = Math.min(y + width, columnCount - 1);
+            for (int j = lower; j <= upper; j++) {
+                if (!revealNode(x + d, j, path, pickedNumbers))
+                    isPathValid = false;
+            }
+            Metrics.add(Metrics.Counter.REVEAL_CELLS, upper - lower + 1);
+        }
+        return isPathValid;
+    }
+
+    /**
+     * Reveals one node in sight, only nodes of type greater than 1 are revealed
+     * If only the remaining part of the path is checked, the first blocked step of it is kept for getFirstInvalidStep
+     * @return False if the node blocks the path (its type is not picked and it is on the path, or on its remaining part), true otherwise
+     */
+    private boolean revealNode(int i, int j, PathIndex path, IntSet pickedNumbers) {
+        int type = graph.getType(i * columnCount + j); // Node is only read for special types
+        if (type <= 1)
+            return true;
+        if (visibility.reveal(i * columnCount + j) && revealListener != null) // Node is revealed for the first time
+            revealListener.accept(i * columnCount + j);
+        if (pickedNumbers.contains(type))
+            return true;
+        // If both node's type is greater than 1 and it is in our path, this means we have a problem in the path
+        if (!isRemainingPathOnly)
+            return !path.contains(i * columnCount + j);
+        int step = path.getRemainingStep(i * columnCount + j);
+        if (step < 0)
+            return true;
+        if (firstInvalidStep < 0 || step < firstInvalidStep)
+            firstInvalidStep = step;
+        return false;
+    }
+
     /**
      * Creates an imaginary square of edges 2*radiusOfSight where the traveler is in the center of the square
      * If the imaginary square goes beyond the borders, cuts the infeasible parts and turns the square into a potential rectangle
-     * @param path hash set of the nodes in the path currently the traveler is walking on
+     * Every node of the rectangle is tested with isInSight, it is the reference behaviour of revealNodes
+     * @param path nodes in the path currently the traveler is walking on
      * @return True if there aren't any problems throughout the seen part of the path, False otherwise
      */
-    public boolean revealNodes(MyHashSet<Node> path, MyHashSet<Integer> pickedNumbers, String option) {
+    public boolean scanSightRectangle(PathIndex path, IntSet pickedNumbers, String option) {
         boolean isPathValid = true; // Initially we treat the path like it is valid
 
         // Set coefficients to set up the grid efficiently
@@ -110,19 +241,15 @@ public class Traveler {
             lowerWall = 0;
 
         // Traverse the rectangle
+        Metrics.add(Metrics.Counter.REVEAL_CELLS, (long) (rightWall - leftWall + 1) * (upperWall - lowerWall + 1));
         for (int i = leftWall; i <= rightWall; i++) {
             for (int j = lowerWall; j <= upperWall; j++) {
-                int type = nodes[i][j].getType();
+                int type = graph.getType(i * columnCount + j); // Node is only read for special types
                 // If current index is in the sight of traveler
                 if (type <= 1)
                     continue;
-                if (isInSight(i, j)) {
-                    nodes[i][j].revealNode();
-                    if (!pickedNumbers.contains(type) && path.contains(nodes[i][j])) { // If both node's type is greater than 1 and it is in our path
-                        // This means we have a problem in the path
-                        isPathValid = false; // Path is invalid
-                    }
-                }
+                if (isInSight(i, j) && !revealNode(i, j, path, pickedNumbers))
+                    isPathValid = false; // Path is invalid
             }
         }
 
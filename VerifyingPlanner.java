@@ -0,0 +1,82 @@
+import java.util.ArrayList;
+
+/**
+ * Runs a planner and Dijkstra side by side and fails if their path costs differ
+ * For a planner that promises Dijkstra's output, the paths must be the same nodes too, so the outputs can not differ
+ * Expansion counters of both are kept, so the nodes saved by the planner can be reported
+ */
+public class VerifyingPlanner implements Planner {
+    private static final double TOLERANCE = 1e-9; // Relative difference allowed, costs of equal paths may be summed in a different order
+
+    private final Planner planner; // Planner whose paths are used
+    private final Planner reference; // Dijkstra, its costs are the expected ones
+    private final boolean isComparingPaths; // If true, the paths must be Dijkstra's, not only their costs
+
+
+    /**
+     * @param planner Planner to verify
+     * @param graph   Graph of the map
+     * @param nodes   2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     */
+    VerifyingPlanner(Planner planner, Graph graph, Node[][] nodes, VisibilityLayer visibility) {
+        this(planner, graph, nodes, visibility, false);
+    }
+
+    /**
+     * @param planner Planner to verify
+     * @param graph   Graph of the map
+     * @param nodes   2-D Node array that stores every node
+     * @param visibility Revealed flags of the nodes
+     * @param isComparingPaths If true, every path must be the one Dijkstra finds, node by node
+     */
+    VerifyingPlanner(Planner planner, Graph graph, Node[][] nodes, VisibilityLayer visibility, boolean isComparingPaths) {
+        this.planner = planner;
+        this.reference = new DijkstraPlanner(graph, nodes, visibility);
+        this.isComparingPaths = isComparingPaths;
+    }
+
+
+    @Override
+    public double findPath(Node startingNode, Node endNode, ArrayList<Node> path, IntSet pickedNumbers) {
+        double cost = planner.findPath(startingNode, endNode, path, pickedNumbers);
+        ArrayList<Node> expectedPath = new ArrayList<>();
+        double expected = reference.findPath(startingNode, endNode, expectedPath, pickedNumbers);
+        String query = " from " + startingNode.getX() + "-" + startingNode.getY() + " to " + endNode.getX() + "-" + endNode.getY();
+        if (Math.abs(cost - expected) > TOLERANCE * Math.max(1, Math.abs(expected)))
+            throw new IllegalStateException("Path cost " + cost + " differs from Dijkstra's " + expected + query);
+        if (isComparingPaths && !path.equals(expectedPath)) { // Nodes are shared, so equals compares them by identity
+            int step = 0; // First step where the paths differ, paths are in reverse order
+            while (step < Math.min(path.size(), expectedPath.size())
+                    && path.get(path.size() - 1 - step) == expectedPath.get(expectedPath.size() - 1 - step))
+                step++;
+            throw new IllegalStateException("Path differs from Dijkstra's at step " + (step + 1) + query);
+        }
+        return cost;
+    }
+
+    @Override
+    public void reset() {
+        planner.reset();
+        reference.reset();
+    }
+
+    @Override
+    public void nodeRevealed(int node) {
+        planner.nodeRevealed(node);
+        reference.nodeRevealed(node);
+    }
+
+    @Override
+    public long getExpansions() {
+        return planner.getExpansions();
+    }
+
+    /**
+     * @return number of nodes expanded by Dijkstra for the same paths
+     */
+    public long getReferenceExpansions() {
+        return reference.getExpansions();
+    }
+
+}
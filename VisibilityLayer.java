@@ -0,0 +1,117 @@
+import java.util.Arrays;
+
+/**
+ * Revealed flags of every node kept in a bitset, one bit per node in row-major order (bit x*columnCount+y)
+ * Searches test a bit instead of following a Node reference, and the whole state is a few words per row,
+ * so a snapshot is a plain copy of the words
+ */
+public class VisibilityLayer {
+    private final int rowCount; // Row count of the grid
+    private final int columnCount; // Column count of the grid
+
+    private final long[] words; // Bit i of words[i >> 6] is set if node i is revealed
+
+
+    /**
+     * @param rowCount    Row count of the grid
+     * @param columnCount Column count of the grid
+     */
+    VisibilityLayer(int rowCount, int columnCount) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        words = new long[(rowCount * columnCount + 63) >>> 6]; // Initially, nodes are not revealed
+    }
+
+
+    /**
+     * @param node flat index of the node
+     * @return True if the node has been revealed
+     */
+    public boolean isRevealed(int node) {
+        return (words[node >>> 6] & (1L << node)) != 0; // Shift distance of a long only uses the lowest 6 bits
+    }
+
+    public boolean isRevealed(int x, int y) {
+        return isRevealed(x * columnCount + y);
+    }
+
+    /**
+     * Reveals a node
+     * @param node flat index of the node
+     * @return True if the node was not revealed before
+     */
+    public boolean reveal(int node) {
+        long word = words[node >>> 6];
+        long bit = 1L << node;
+        words[node >>> 6] = word | bit;
+        return (word & bit) == 0;
+    }
+
+    /**
+     * Reveals the nodes of row x whose y coordinates are in [fromY, toY], whole words are set at once
+     * @param x     X coordinate of the row
+     * @param fromY First y coordinate of the span
+     * @param toY   Last y coordinate of the span (inclusive), nothing happens if it is smaller than fromY
+     */
+    public void revealSpan(int x, int fromY, int toY) {
+        if (toY < fromY)
+            return;
+        int from = x * columnCount + fromY;
+        int to = x * columnCount + toY; // Inclusive
+        int fromWord = from >>> 6;
+        int toWord = to >>> 6;
+        long firstMask = -1L << from; // Bits from the start of the span to the end of its first word
+        long lastMask = -1L >>> (63 - (to & 63)); // Bits from the start of the last word to the end of the span
+        if (fromWord == toWord) {
+            words[fromWord] |= firstMask & lastMask;
+            return;
+        }
+        words[fromWord] |= firstMask;
+        for (int w = fromWord + 1; w < toWord; w++)
+            words[w] = -1L;
+        words[toWord] |= lastMask;
+    }
+
+    /**
+     * @return number of revealed nodes
+     */
+    public int countRevealed() {
+        int count = 0;
+        for (long word : words)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * @return copy of the words of the bitset, it can be given back to restore
+     */
+    public long[] snapshot() {
+        return words.clone();
+    }
+
+    /**
+     * Sets the revealed flags to a snapshot taken from a layer of the same size
+     * @param snapshot Words returned by snapshot
+     */
+    public void restore(long[] snapshot) {
+        if (snapshot.length != words.length)
+            throw new IllegalArgumentException("Snapshot has " + snapshot.length + " words, " + words.length + " expected");
+        System.arraycopy(snapshot, 0, words, 0, words.length);
+    }
+
+    /**
+     * Hides every node again
+     */
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+}